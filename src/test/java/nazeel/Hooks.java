@@ -1,29 +1,79 @@
 package nazeel;
 
 import io.github.bonigarcia.wdm.WebDriverManager;
+import nazeel.listeners.ChangeSelectionListener;
+import nazeel.listeners.CircuitBreakerListener;
+import nazeel.listeners.ReservationCleanupListener;
+import nazeel.listeners.StreamingResultListener;
+import nazeel.listeners.SuiteReportListener;
+import nazeel.listeners.TimingHistoryListener;
+import nazeel.utils.CircuitBreaker;
+import nazeel.utils.CommandTrace;
+import nazeel.utils.Config;
+import nazeel.utils.DomSignal;
+import nazeel.utils.EmulationProfile;
+import nazeel.utils.FlightEvents;
+import nazeel.utils.GuestPool;
+import nazeel.utils.LocatorCheck;
+import nazeel.utils.PagePerformance;
+import nazeel.utils.Reports;
+import nazeel.utils.ResourceFilter;
+import nazeel.utils.SessionMonitor;
+import nazeel.utils.SoakMonitor;
+import nazeel.utils.StepTracer;
+import nazeel.utils.TestBudget;
+import nazeel.utils.TrafficArchive;
+import nazeel.utils.UnitAllocator;
+import nazeel.utils.WarmProfile;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WindowType;
 import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.support.ui.Sleeper;
 import org.openqa.selenium.support.ui.WebDriverWait;
+import org.testng.ITestContext;
+import org.testng.ITestResult;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.AfterTest;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeSuite;
 import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Listeners;
 
 import java.time.Duration;
-import java.util.ArrayList;
 
 /**
  * The Hooks class handles browser setup and teardown for the tests,
  * as well as providing utility methods for browser interactions.
+ * The listeners declared here apply to every test suite extending it.
  */
+@Listeners({ChangeSelectionListener.class, CircuitBreakerListener.class, TimingHistoryListener.class,
+        ReservationCleanupListener.class, StreamingResultListener.class, SuiteReportListener.class})
 public class Hooks {
 
+    /**
+     * Runs once before the suite to check the environment and provision the test data shared by all tests.
+     *
+     * @param context The TestNG context, whose suite parameters are registered as harness settings.
+     */
+    @BeforeSuite
+    public void provisionTestData(ITestContext context) {
+        Config.load(context.getSuite().getXmlSuite().getAllParameters());
+        // Skip the whole run up front when the environment is down
+        CircuitBreaker.preflight();
+        GuestPool.provision(GuestPool.local());
+    }
+
     /**
      * Runs before each test method to initialize the browser.
+     *
+     * @param context The TestNG context, whose suite/test parameters are registered as harness settings.
      */
     @BeforeTest
-    public void openBrowser() {
+    public void openBrowser(ITestContext context) {
+        Config.load(context.getCurrentXmlTest().getAllParameters());
         Browser.open();
+        // Fail fast on broken page object locators, before any test flow starts
+        LocatorCheck.validate(Browser.getDriver());
     }
 
     /**
@@ -36,42 +86,179 @@ public class Hooks {
         Browser.quit();
     }
 
+    /**
+     * Runs before each test method to replace a browser session that reached its recycling limits
+     * and to sample the session memory.
+     *
+     * @throws InterruptedException if interrupted while recycling the browser.
+     */
+    @BeforeMethod
+    public void checkSession() throws InterruptedException {
+        Browser.recycleIfNeeded();
+        Browser.monitor.testStarted();
+    }
+
+    /**
+     * Runs before each test method to start its time budget, shared by all its explicit waits.
+     */
+    @BeforeMethod
+    public void startTestBudget() {
+        TestBudget.start();
+    }
+
+    /**
+     * Runs after each test method to end its time budget.
+     */
+    @AfterMethod
+    public void endTestBudget() {
+        TestBudget.finish();
+    }
+
+    /**
+     * Runs after each test method to report how much the session memory grew
+     * and, in endurance mode, to add the test to the soak time series. A failure to measure is only logged,
+     * as a failing configuration method would skip every remaining test.
+     *
+     * @param result The result of the test method.
+     */
+    @AfterMethod
+    public void measureSession(ITestResult result) {
+        String test = result.getMethod().getMethodName();
+        try {
+            Browser.monitor.testFinished(test);
+            SoakMonitor.cycleFinished(test, result.isSuccess(), Browser.monitor.lastSample());
+        } catch (RuntimeException e) {
+            Reports.warn("could not measure the session after " + test + ": " + e);
+        }
+    }
+
+    /**
+     * Runs after each test method to return the test data it leased.
+     */
+    @AfterMethod
+    public void releaseTestData() {
+        GuestPool.releaseAll();
+        UnitAllocator.releaseAll();
+    }
+
     /**
      * Nested static class to manage browser-related utilities and driver instance.
      */
     public static class Browser {
         private static WebDriver mainDriver;
+        private static ResourceFilter resourceFilter;
+        private static TrafficArchive traffic;
+        private static SessionMonitor monitor;
+
+        // Additional sessions bound to worker threads, e.g. for background cleanup
+        private static final ThreadLocal<WebDriver> threadDriver = new ThreadLocal<>();
 
         /**
          * Returns the current WebDriver instance.
          *
-         * @return The WebDriver instance in use.
+         * @return The session bound to the current thread, or the main browser session.
          */
         public static WebDriver getDriver() {
-            return mainDriver;
+            WebDriver driver = threadDriver.get();
+            return driver != null ? driver : mainDriver;
         }
 
         /**
-         * Opens the browser, sets up WebDriver, and maximizes the window.
+         * Starts an additional browser session, independent of the main one.
+         *
+         * @return The WebDriver instance of the new session.
          */
-        private static void open() {
+        public static WebDriver newSession() {
             // Set up the WebDriver
             WebDriverManager.chromedriver().setup();
-            mainDriver = new ChromeDriver();
+            // Trace every command per step when enabled by the nazeel.commandTrace setting
+            // Start from a clone of the warm template profile when enabled by the nazeel.warmProfile setting
+            WebDriver driver = CommandTrace.decorate(new ChromeDriver(WarmProfile.options()));
             // Maximize the browser window
-            mainDriver.manage().window().maximize();
+            driver.manage().window().maximize();
+            // Wake explicit waits on page changes, unless disabled by the nazeel.waits.push setting
+            DomSignal.install(driver);
+            return driver;
+        }
+
+        /**
+         * Binds a session to the current thread, so the page objects and actions used on it drive that session.
+         *
+         * @param driver The session to bind, or null to fall back to the main session.
+         */
+        public static void bind(WebDriver driver) {
+            if (driver == null) {
+                threadDriver.remove();
+            } else {
+                threadDriver.set(driver);
+            }
+        }
+
+        /**
+         * Opens the browser, sets up WebDriver, and maximizes the window.
+         */
+        private static void open() {
+            mainDriver = newSession();
             // Wait for the browser to be ready by ensuring a window handle exists
             explicitWait(3).until(driver -> !mainDriver.getWindowHandles().isEmpty());
+            // Block or measure unneeded assets when enabled by the nazeel.resourceFilter setting
+            resourceFilter = ResourceFilter.install(mainDriver);
+            // Record or replay the backend responses when enabled by the nazeel.traffic setting
+            traffic = TrafficArchive.install(mainDriver);
+            // Observe Web Vitals from the first page on, unless disabled by the nazeel.vitals setting
+            PagePerformance.install(mainDriver);
+            // Track the memory of the session across the tests reusing it
+            monitor = new SessionMonitor(mainDriver);
+            // Record the backend response times per soak cycle when enabled by the nazeel.soak.hours setting
+            SoakMonitor.install(mainDriver);
+            // Throttle network and CPU when an emulation profile is selected by the nazeel.emulation setting
+            EmulationProfile.apply(mainDriver);
+            // Trace the steps selected by the nazeel.trace.steps setting
+            StepTracer.install(mainDriver);
+            // Emit the steps as flight recorder events, unless disabled by the nazeel.jfr setting
+            if (Config.getBoolean("nazeel.jfr", true)) {
+                FlightEvents.install();
+            }
         }
 
         /**
-         * Switches to a browser window by index.
+         * Replaces the browser session by a fresh one when it reached the nazeel.session limits.
          *
-         * @param windowIndex The index of the window to switch to.
+         * @throws InterruptedException if interrupted while closing the browser.
+         */
+        private static void recycleIfNeeded() throws InterruptedException {
+            if (monitor.shouldRecycle()) {
+                Reports.log("Recycling the browser session after its memory or test limit was reached.");
+                close();
+                open();
+            }
+        }
+
+        /**
+         * Switches to a browser window or tab by its handle.
+         *
+         * @param windowHandle The handle of the window to switch to, as returned by getWindowHandle().
          * @return The WebDriver instance focused on the desired window.
          */
-        public static WebDriver switchTo(int windowIndex) {
-            return mainDriver.switchTo().window(new ArrayList<>(mainDriver.getWindowHandles()).get(windowIndex));
+        public static WebDriver switchTo(String windowHandle) {
+            WebDriver driver = getDriver().switchTo().window(windowHandle);
+            // Page change notifications only reach the window they were installed on
+            DomSignal.focused(driver, windowHandle);
+            return driver;
+        }
+
+        /**
+         * Opens a new tab in the current session, sharing its login, and switches to it.
+         *
+         * @param url The page to load in the new tab.
+         * @return The handle of the new tab.
+         */
+        public static String openTab(String url) {
+            WebDriver tab = getDriver().switchTo().newWindow(WindowType.TAB);
+            String handle = tab.getWindowHandle();
+            DomSignal.focused(tab, handle);
+            tab.get(url);
+            return handle;
         }
 
         /**
@@ -80,27 +267,38 @@ public class Hooks {
          * @param seconds The duration of the implicit wait in seconds.
          */
         public static void implicitWait(int seconds) {
-            mainDriver.manage().timeouts().implicitlyWait(Duration.ofSeconds(seconds));
+            getDriver().manage().timeouts().implicitlyWait(Duration.ofSeconds(seconds));
         }
 
         /**
          * Creates and returns a WebDriverWait instance for explicit waits.
          *
          * @param seconds The duration of the explicit wait in seconds.
-         * @return A WebDriverWait instance.
+         * @return A WebDriverWait instance, re-checking its condition whenever the page changes
+         * and cancelled as soon as the circuit breaker trips, recorded as a flight recorder event.
+         * It lasts at most the remaining time budget of the running test.
+         * @throws TestBudget.ExceededException if the time budget of the running test is spent.
          */
         public static WebDriverWait explicitWait(int seconds) {
-            return new WebDriverWait(mainDriver, Duration.ofSeconds(seconds));
+            Duration timeout = Duration.ofSeconds(seconds);
+            DomSignal signal = DomSignal.of(getDriver());
+            if (signal == null) {
+                return new TestBudget.BudgetedWait(getDriver(), timeout, Duration.ofMillis(500),
+                        CircuitBreaker.checking(Sleeper.SYSTEM_SLEEPER));
+            }
+            return new TestBudget.BudgetedWait(getDriver(), timeout, DomSignal.fallbackPolling(),
+                    CircuitBreaker.checking(signal.sleeper(timeout)));
         }
 
         /**
-         * Closes a specific browser window by index and switches back to the previous window.
+         * Closes a specific browser window by its handle and switches to another one.
          *
-         * @param windowIndex The index of the window to close.
+         * @param windowHandle The handle of the window to close.
+         * @param nextHandle   The handle of the window to switch to afterwards.
          */
-        public static void closeWindow(int windowIndex) {
-            switchTo(windowIndex).close();
-            switchTo(windowIndex - 1); // Switch back to the previous window
+        public static void closeWindow(String windowHandle, String nextHandle) {
+            switchTo(windowHandle).close();
+            switchTo(nextHandle);
         }
 
         /**
@@ -110,6 +308,20 @@ public class Hooks {
          */
         private static void quit() throws InterruptedException {
             Thread.sleep(2000); // Wait for 2 seconds before quitting
+            close();
+        }
+
+        /**
+         * Reports the session statistics and quits the browser.
+         */
+        private static void close() {
+            if (resourceFilter != null) {
+                resourceFilter.report();
+            }
+            if (traffic != null) {
+                traffic.report();
+            }
+            CommandTrace.report();
             mainDriver.quit();
         }
     }
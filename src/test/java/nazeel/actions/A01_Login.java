@@ -2,6 +2,7 @@ package nazeel.actions;
 
 import nazeel.Hooks;
 import nazeel.pages.P01_Login;
+import nazeel.utils.FormFiller;
 
 /**
  * Action Class for the Login Page in the Nazeel system.
@@ -54,6 +55,25 @@ public class A01_Login {
         return this;
     }
 
+    /**
+     * Fills the username, password and access code fields and submits the login form in a single script call.
+     * The entered values are verified before the login button is clicked.
+     *
+     * @param username   The username to enter.
+     * @param password   The password to enter.
+     * @param accessCode The access code to enter.
+     * @return The current A01_Login instance for method chaining.
+     */
+    public A01_Login login(String username, String password, String accessCode) {
+        new FormFiller()
+                .field(loginPage.getUsernameLocator(), username)
+                .field(loginPage.getPasswordLocator(), password)
+                .field(loginPage.getAccessCodeLocator(), accessCode)
+                .submit(loginPage.getLoginButtonLocator())
+                .fill();
+        return this;
+    }
+
     /**
      * Opens the login page by navigating to its URL.
      */
@@ -2,13 +2,18 @@ package nazeel.actions;
 
 import nazeel.Hooks;
 import nazeel.pages.P03_Reservation;
+import nazeel.pages.P03_Reservation.UnitCard;
+import nazeel.utils.FormFiller;
+import nazeel.utils.KendoDropDown;
+import nazeel.utils.UnitAllocator;
 import org.openqa.selenium.Keys;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Random;
 
 /**
  * Action Class for the Reservation Page in the Nazeel system.
@@ -31,30 +36,126 @@ public class A03_Reservation {
     }
 
     /**
-     * Hovers over a randomly selected unit card.
+     * Strategy choosing which available unit to reserve.
+     */
+    @FunctionalInterface
+    public interface UnitSelectionPolicy {
+        /**
+         * Orders the available units by preference.
+         *
+         * @param availableUnits The units offering the "Add Reservation" action, in grid order.
+         * @return The acceptable units, most preferred first.
+         */
+        List<UnitCard> rank(List<UnitCard> availableUnits);
+
+        /**
+         * Prefers the available units in random order.
+         *
+         * @return The random selection policy.
+         */
+        static UnitSelectionPolicy random() {
+            return availableUnits -> {
+                List<UnitCard> shuffled = new ArrayList<>(availableUnits);
+                Collections.shuffle(shuffled);
+                return shuffled;
+            };
+        }
+
+        /**
+         * Prefers the first available units of the grid.
+         *
+         * @return The first-free selection policy.
+         */
+        static UnitSelectionPolicy firstFree() {
+            return availableUnits -> availableUnits;
+        }
+
+        /**
+         * Accepts only available units of the given type, in random order.
+         *
+         * @param unitType The unit type, matched case-insensitively against the type shown on the card.
+         * @return The by-type selection policy.
+         */
+        static UnitSelectionPolicy byType(String unitType) {
+            return availableUnits -> random().rank(availableUnits.stream()
+                    .filter(unit -> unit.unitType().toLowerCase().contains(unitType.toLowerCase()))
+                    .toList());
+        }
+    }
+
+    /**
+     * Chooses an available unit by policy, scrolls its card into view and hovers over it to reveal its actions.
+     * The whole grid is read in a single script call instead of one WebElement per card, and the unit is leased
+     * through the {@link UnitAllocator} so no concurrently running test picks the same unit.
      *
-     * @return The index of the hovered unit card.
+     * @param policy The policy choosing among the available units.
+     * @return The hovered unit card.
      */
-    public int hoverRandomCard() {
-        // Get the list of unit cards
-        List<WebElement> cards = reservationPage.getUnitsCards();
+    public UnitCard hoverUnit(UnitSelectionPolicy policy) {
+        // Read every card of the grid and keep the available ones
+        List<UnitCard> availableUnits = reservationPage.scanUnitsGrid().stream()
+                .filter(UnitCard::available)
+                .toList();
 
-        // Check if the list is empty
-        if (cards.isEmpty()) {
-            throw new RuntimeException("No unit cards found to hover over.");
+        // Check if any unit can be reserved
+        if (availableUnits.isEmpty()) {
+            throw new RuntimeException("No available unit cards found to hover over.");
         }
 
-        // Generate a random number within the range of the cards list
-        int randomCardNumber = new Random().nextInt(reservationPage.getAddReservationButtons().size());
+        // Lease the most preferred unit according to the policy that no other test holds
+        List<UnitCard> rankedUnits = policy.rank(availableUnits);
+        if (rankedUnits.isEmpty()) {
+            throw new RuntimeException("No available unit card matches the selection policy.");
+        }
+        UnitAllocator.Lease lease = UnitAllocator.acquire(rankedUnits.stream().map(UnitCard::unitNumber).toList());
+        if (lease == null) {
+            throw new RuntimeException("All matching available units are leased by other running tests.");
+        }
+        UnitCard unit = rankedUnits.stream()
+                .filter(candidate -> candidate.unitNumber().equals(lease.unitNumber()))
+                .findFirst()
+                .orElseThrow();
 
-        // Get the card corresponding to the random number
-        WebElement randomCard = cards.get(randomCardNumber);
+        // Scroll the card into view and perform a hover action using the Actions class
+        WebElement card = reservationPage.revealUnitCard(unit.index());
+        new Actions(Hooks.Browser.getDriver()).moveToElement(card).perform();
 
-        // Perform a hover action using the Actions class
-        Actions actions = new Actions(Hooks.Browser.getDriver());
-        actions.moveToElement(randomCard).perform();
+        return unit;
+    }
 
-        return randomCardNumber;
+    /**
+     * Hovers over a randomly selected available unit card.
+     *
+     * @return The index of the hovered unit card.
+     */
+    public int hoverRandomCard() {
+        return hoverUnit(UnitSelectionPolicy.random()).index();
+    }
+
+    /**
+     * Checks if a unit is occupied by a reservation in the units view.
+     *
+     * @param unitNumber The unit number shown on the card.
+     * @return true if the unit card exists and does not offer the "Add Reservation" action.
+     */
+    public boolean isUnitOccupied(String unitNumber) {
+        return reservationPage.scanUnitsGrid().stream()
+                .anyMatch(unit -> unit.unitNumber().equals(unitNumber) && !unit.available());
+    }
+
+    /**
+     * Opens the reservation occupying a unit by clicking its card in the units view.
+     *
+     * @param unitNumber The unit number shown on the card.
+     * @return The current A03_Reservation instance for method chaining.
+     */
+    public A03_Reservation openUnitReservation(String unitNumber) {
+        UnitCard unit = reservationPage.scanUnitsGrid().stream()
+                .filter(card -> card.unitNumber().equals(unitNumber) && !card.available())
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("No occupied unit card found for unit " + unitNumber));
+        reservationPage.revealUnitCard(unit.index()).click();
+        return this;
     }
 
     /**
@@ -64,7 +165,8 @@ public class A03_Reservation {
      * @return true if the button is displayed, false otherwise.
      */
     public boolean isAddReservationButtonDisplayed(int indexOfHoveredCard) {
-        return reservationPage.getAddReservationButtons().get(indexOfHoveredCard).isDisplayed();
+        WebElement addReservationButton = reservationPage.getAddReservationButton(indexOfHoveredCard);
+        return addReservationButton != null && addReservationButton.isDisplayed();
     }
 
     /**
@@ -74,7 +176,7 @@ public class A03_Reservation {
      * @return The current A03_Reservation instance for method chaining.
      */
     public A03_Reservation clickAddReservationButton(int indexOfHoveredCard) {
-        reservationPage.getAddReservationButtons().get(indexOfHoveredCard).click();
+        reservationPage.getAddReservationButton(indexOfHoveredCard).click();
         return this;
     }
 
@@ -205,65 +307,27 @@ public class A03_Reservation {
         return this;
     }
 
-    /**
-     * Clicks the dropdown list for selecting the visit purpose.
-     *
-     * @return The current A03_Reservation instance for method chaining.
-     */
-    public A03_Reservation clickVisitPurposeDropList() {
-        reservationPage.getVisitPurposeDropList().click();
-        return this;
-    }
-
-    /**
-     * Clicks the dropdown list for selecting the reservation source.
-     *
-     * @return The current A03_Reservation instance for method chaining.
-     */
-    public A03_Reservation clickReservationSourceDropList() {
-        reservationPage.getReservationSourceDropList().click();
-        return this;
-    }
-
-    /**
-     * Checks if the options for visit purpose are displayed.
-     *
-     * @return true if the options are displayed, false otherwise.
-     */
-    public boolean isVisitPurposeOptionsDisplayed() {
-        return reservationPage.getVisitPurposeOptions().getFirst().isDisplayed();
-    }
-
-    /**
-     * Checks if the options for reservation source are displayed.
-     *
-     * @return true if the options are displayed, false otherwise.
-     */
-    public boolean isReservationSourceOptionsDisplayed() {
-        return reservationPage.getReservationSourceOptions().getFirst().isDisplayed();
-    }
-
     /**
      * Selects a random option from the visit purpose dropdown list.
+     * The options are read, one is selected and the shown value is verified in a single script call;
+     * the list does not need to be opened first.
      *
      * @return The current A03_Reservation instance for method chaining.
      */
     public A03_Reservation selectRandomVisitPurposeOptions() {
-        List<WebElement> visitPurposeOptions = reservationPage.getVisitPurposeOptions();
-        int randomOptionNumber = new Random().nextInt(visitPurposeOptions.size());
-        visitPurposeOptions.get(randomOptionNumber).click();
+        new KendoDropDown(reservationPage.getVisitPurposeDropListLocator()).selectRandom();
         return this;
     }
 
     /**
      * Selects a random option from the reservation source dropdown list.
+     * The options are read, one is selected and the shown value is verified in a single script call;
+     * the list does not need to be opened first.
      *
      * @return The current A03_Reservation instance for method chaining.
      */
     public A03_Reservation selectRandomReservationSourceOptions() {
-        List<WebElement> reservationSourceOptions = reservationPage.getReservationSourceOptions();
-        int randomOptionNumber = new Random().nextInt(reservationSourceOptions.size());
-        reservationSourceOptions.get(randomOptionNumber).click();
+        new KendoDropDown(reservationPage.getReservationSourceDropListLocator()).selectRandom();
         return this;
     }
 
@@ -369,6 +433,21 @@ public class A03_Reservation {
         return this;
     }
 
+    /**
+     * Reads the ID number of the guest of the opened reservation.
+     *
+     * @return The guest ID number, or null if the page does not show exactly one.
+     */
+    public String getReservationGuestId() {
+        List<WebElement> fields = reservationPage.getReservationGuestIdNumbers();
+        if (fields.size() != 1) {
+            return null;
+        }
+        WebElement field = fields.getFirst();
+        String guestId = field.getTagName().equals("input") ? field.getDomProperty("value") : field.getText();
+        return guestId == null || guestId.isBlank() ? null : guestId.trim();
+    }
+
     /**
      * Checks if the button for check-out is displayed.
      *
@@ -419,12 +498,15 @@ public class A03_Reservation {
 
     /**
      * Enters the payment method into the appropriate input field.
+     * The value is typed through an Actions chain and verified before ENTER commits the autocomplete selection.
      *
      * @param paymentMethod The payment method to enter.
      * @return The current A03_Reservation instance for method chaining.
      */
     public A03_Reservation enterPaymentMethod(String paymentMethod) {
-        reservationPage.getPaymentMethod().sendKeys(paymentMethod + Keys.ENTER);
+        new FormFiller()
+                .field(reservationPage.getPaymentMethodLocator(), paymentMethod + Keys.ENTER)
+                .type();
         return this;
     }
 
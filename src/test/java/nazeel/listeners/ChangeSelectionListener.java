@@ -0,0 +1,65 @@
+package nazeel.listeners;
+
+import nazeel.utils.Config;
+import nazeel.utils.Reports;
+import nazeel.utils.TestSelection;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TestNG listener running only the tests affected by the changes since a git ref, as found by {@link TestSelection}.
+ * <p>
+ * Enabled with nazeel.select.since, e.g. {@code mvn test -Dnazeel.select.since=origin/main}. The tests listed in
+ * nazeel.select.always (comma-separated method names) run regardless, as a safety set. The decision for every test,
+ * with the change it depends on, is appended to test-selection.csv. When git fails, every test runs.
+ */
+public class ChangeSelectionListener implements IMethodInterceptor {
+    private static final String HEADER = "test,selected,reason";
+
+    // Selections computed in this JVM, by git ref
+    private static final Map<String, TestSelection> selections = new ConcurrentHashMap<>();
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        Config.load(context.getCurrentXmlTest().getAllParameters());
+        String since = Config.get("nazeel.select.since", null);
+        if (since == null) {
+            return methods;
+        }
+        TestSelection selection;
+        try {
+            selection = selections.computeIfAbsent(since,
+                    ref -> TestSelection.since(ref, Path.of(Config.get("nazeel.select.sourceDir", "src/test/java"))));
+        } catch (RuntimeException e) {
+            Reports.warn("could not select the tests changed since " + since + ", running all: " + e);
+            return methods;
+        }
+        List<String> always = Config.getList("nazeel.select.always", "");
+        List<IMethodInstance> selected = new ArrayList<>();
+        StringBuilder rows = new StringBuilder();
+        for (IMethodInstance instance : methods) {
+            ITestNGMethod method = instance.getMethod();
+            String className = method.getRealClass().getSimpleName();
+            String reason = always.contains(method.getMethodName()) ? "safety set"
+                    : selection.reason(className, method.getMethodName());
+            if (reason != null) {
+                selected.add(instance);
+            }
+            rows.append(className).append('.').append(method.getMethodName()).append(',').append(reason != null)
+                    .append(",\"").append(reason == null ? "" : reason.replace("\"", "\"\"")).append('"')
+                    .append(System.lineSeparator());
+        }
+        Reports.log("Change-based selection since " + since + ": running " + selected.size() + " of "
+                + methods.size() + " tests (" + HEADER + ")" + System.lineSeparator() + rows);
+        Reports.append("test-selection.csv", HEADER, rows);
+        return selected;
+    }
+}
@@ -0,0 +1,20 @@
+package nazeel.listeners;
+
+import nazeel.utils.CircuitBreaker;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestResult;
+
+/**
+ * TestNG listener skipping every pending test, and its before-method setup, once the {@link CircuitBreaker}
+ * has tripped, reporting the root cause as the skip reason.
+ */
+public class CircuitBreakerListener implements IInvokedMethodListener {
+
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (method.isTestMethod() || method.getTestMethod().isBeforeMethodConfiguration()) {
+            CircuitBreaker.check();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package nazeel.listeners;
+
+import nazeel.Hooks;
+import nazeel.actions.A01_Login;
+import nazeel.actions.A02_Home;
+import nazeel.actions.A03_Reservation;
+import nazeel.utils.AsyncSession;
+import nazeel.utils.Config;
+import nazeel.utils.ReservationCleanup;
+import nazeel.utils.ReservationLedger;
+import nazeel.utils.ReservationLedger.Reservation;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+/**
+ * TestNG listener cleaning up the reservations failed tests leave open on the "Test One" property.
+ * <p>
+ * As soon as a test fails or is skipped, its open reservations are checked out in the background on separate
+ * browser sessions while the suite keeps running. A reservation is only checked out when the opened unit shows
+ * the guest it was made for. When the suite finishes, every reservation still open in the
+ * {@link ReservationLedger}, including leftovers of earlier runs, is swept the same way.
+ * Running the class directly performs the sweep alone, e.g. from a scheduled job.
+ */
+public class ReservationCleanupListener implements ITestListener, ISuiteListener {
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        ReservationLedger.takePending();
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        ReservationCleanup.submit(ReservationLedger.takePending(), ReservationCleanupListener::uiCloser);
+    }
+
+    @Override
+    public void onTestSkipped(ITestResult result) {
+        ReservationCleanup.submit(ReservationLedger.takePending(), ReservationCleanupListener::uiCloser);
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        ReservationCleanup.sweep(ReservationCleanupListener::uiCloser);
+    }
+
+    /**
+     * Sweeps every reservation still open in the ledger.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        ReservationCleanup.sweep(ReservationCleanupListener::uiCloser);
+    }
+
+    /**
+     * Creates a closer that logs into its own browser session and checks reservations out through the UI.
+     * The session is driven through an {@link AsyncSession}, so a checkout hanging for longer than
+     * nazeel.cleanup.closeTimeoutSeconds (default 180) is interrupted and reported as failed.
+     *
+     * @return The UI closer.
+     */
+    public static ReservationCleanup.Closer uiCloser() {
+        return new ReservationCleanup.Closer() {
+            private final AsyncSession session = AsyncSession.open().join();
+            private final A01_Login loginActions = new A01_Login();
+            private final A02_Home homeActions = new A02_Home();
+            private final A03_Reservation reservationActions = new A03_Reservation();
+            private boolean loggedIn;
+
+            @Override
+            public String close(Reservation reservation) throws Exception {
+                try {
+                    return session.supply(() -> checkOut(reservation),
+                            Duration.ofSeconds(Config.getInt("nazeel.cleanup.closeTimeoutSeconds", 180))).join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+
+            // Runs on the session thread, with the session bound as the driver
+            private String checkOut(Reservation reservation) {
+                openReservationsPage();
+                if (!reservationActions.isUnitOccupied(reservation.unitNumber())) {
+                    return "ALREADY_CLOSED";
+                }
+                reservationActions.openUnitReservation(reservation.unitNumber());
+
+                Hooks.Browser.explicitWait(10).until(d -> reservationActions.isCheckOutButtonDisplayed());
+                String guestId = reservationActions.getReservationGuestId();
+                if (guestId == null) {
+                    // Without the guest the reservation may be another test's, so it is left for a later run
+                    return "SKIPPED: guest ID of the reservation not found";
+                }
+                if (!guestId.equals(reservation.guestId())) {
+                    // Another reservation took the unit, so this one was closed outside the ledger
+                    return "ALREADY_CLOSED: unit occupied by another guest";
+                }
+                reservationActions.clickCheckOutButton();
+                Hooks.Browser.explicitWait(10).until(d -> reservationActions.isConfirmCheckOutButtonDisplayed());
+                reservationActions.clickConfirmCheckOutButton()
+                        .clickReceiptVoucherButton()
+                        .enterPaymentMethod("Cash");
+                Hooks.Browser.explicitWait(10).until(d -> reservationActions.isSaveAndContinueButtonDisplayed());
+                reservationActions.clickSaveAndContinueButton();
+                Hooks.Browser.explicitWait(10).until(d -> reservationActions.isSuccessfulMessageDisplayed());
+                return "CHECKED_OUT";
+            }
+
+            // Logs in once per session, then only returns to the units view
+            private void openReservationsPage() {
+                if (!loggedIn) {
+                    loginActions.open();
+                    loginActions.login(Config.get("nazeel.username", "Mahmoud Gamal"),
+                            Config.get("nazeel.password", "123456Mm&&"), Config.get("nazeel.accessCode", "01373"));
+                    Hooks.Browser.explicitWait(10).until(d -> loginActions.isPropertyTestOneDisplayed());
+                    loginActions.clickPropertyTestOne();
+                    Hooks.Browser.explicitWait(10).until(d -> homeActions.isLaterButtonDisplayed());
+                    homeActions.clickLaterButton();
+                    loggedIn = true;
+                }
+                homeActions.selectReservationsTab();
+                Hooks.Browser.explicitWait(15).until(d -> reservationActions.isUnitsCardsDisplayed());
+            }
+
+            @Override
+            public void close() {
+                session.close();
+            }
+        };
+    }
+}
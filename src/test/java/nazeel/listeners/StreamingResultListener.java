@@ -0,0 +1,228 @@
+package nazeel.listeners;
+
+import nazeel.utils.Config;
+import nazeel.utils.Reports;
+import org.openqa.selenium.json.Json;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TestNG listener writing every result to disk the moment it finishes, so reporting memory stays constant however
+ * many results a run produces and the report of a crashed JVM is kept up to its last result.
+ * <p>
+ * Each suite gets, in the report folder, both rewritten by every run:
+ * - results-&lt;suite&gt;.jsonl: one JSON object per result, appended as results finish.
+ * - junit-&lt;suite&gt;.xml: a JUnit XML report that is a complete, valid document after every result; new test cases
+ * overwrite the closing tag and the counters are patched in a space-padded header.
+ * Only the counters are kept in memory. The default TestNG reporters, which keep every result until the end,
+ * can be turned off with the streaming-reports Maven profile.
+ */
+public class StreamingResultListener implements ITestListener, ISuiteListener {
+    // Reports of the running suites
+    private final Map<String, SuiteReport> reports = new ConcurrentHashMap<>();
+
+    @Override
+    public void onStart(ISuite suite) {
+        // Runs before Hooks loads the suite parameters, which may set the report folder
+        Config.load(suite.getXmlSuite().getAllParameters());
+        reports.computeIfAbsent(suite.getName(), SuiteReport::new);
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        SuiteReport report = reports.remove(suite.getName());
+        if (report != null) {
+            report.close();
+        }
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        report(result, "PASS");
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        report(result, "FAIL");
+    }
+
+    @Override
+    public void onTestSkipped(ITestResult result) {
+        report(result, "SKIP");
+    }
+
+    @Override
+    public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+        report(result, "PASS");
+    }
+
+    private void report(ITestResult result, String status) {
+        String suite = result.getTestContext().getSuite().getName();
+        reports.computeIfAbsent(suite, SuiteReport::new).add(result, status);
+    }
+
+    /**
+     * Streamed JSON-lines and JUnit XML reports of one suite.
+     */
+    private static final class SuiteReport {
+        private static final String CLOSING = "</testsuite>\n";
+
+        // Room reserved for the counters of the testsuite element, padded with spaces
+        private static final int HEADER_LENGTH = 160;
+
+        private final String name;
+        private final Path dir;
+        private final FileChannel jsonLines;
+        private final FileChannel junit;
+        private final long headerPosition;
+        private final String timestamp = Instant.now().toString();
+        private long tailPosition;
+        private int tests;
+        private int failures;
+        private int skipped;
+        private double seconds;
+
+        private SuiteReport(String name) {
+            this.name = name;
+            this.dir = Config.reportDir();
+            try {
+                Files.createDirectories(dir);
+                String fileName = name.replaceAll("[^\\w.-]", "_");
+                jsonLines = FileChannel.open(dir.resolve("results-" + fileName + ".jsonl"),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                junit = FileChannel.open(dir.resolve("junit-" + fileName + ".xml"),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                String prolog = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuite name=\"" + escape(name) + "\"";
+                headerPosition = prolog.getBytes(StandardCharsets.UTF_8).length;
+                write(junit, 0, prolog);
+                tailPosition = headerPosition + write(junit, headerPosition, header());
+                write(junit, tailPosition, CLOSING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private synchronized void add(ITestResult result, String status) {
+            double durationSeconds = Math.max(0, result.getEndMillis() - result.getStartMillis()) / 1000.0;
+            tests++;
+            seconds += durationSeconds;
+            switch (status) {
+                case "FAIL" -> failures++;
+                case "SKIP" -> skipped++;
+                default -> {
+                }
+            }
+            try {
+                jsonLines.write(ByteBuffer.wrap((toJson(result, status) + "\n").getBytes(StandardCharsets.UTF_8)));
+                tailPosition += write(junit, tailPosition, toTestCase(result, status, durationSeconds));
+                write(junit, tailPosition, CLOSING);
+                write(junit, headerPosition, header());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private synchronized void close() {
+            try {
+                jsonLines.close();
+                junit.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Reports.log(String.format("Streamed %d results of %s (%d failed, %d skipped) to %s",
+                    tests, name, failures, skipped, dir));
+        }
+
+        /**
+         * Returns the counters of the testsuite element, padded to their reserved length.
+         */
+        private String header() {
+            String attributes = String.format(Locale.ROOT, " tests=\"%d\" failures=\"%d\" errors=\"0\" skipped=\"%d\" time=\"%.3f\" timestamp=\"%s\"",
+                    tests, failures, skipped, seconds, timestamp);
+            return attributes + " ".repeat(Math.max(0, HEADER_LENGTH - attributes.length())) + ">\n";
+        }
+
+        private static String toJson(ITestResult result, String status) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("suite", result.getTestContext().getSuite().getName());
+            line.put("test", result.getTestContext().getName());
+            line.put("class", result.getTestClass().getName());
+            line.put("method", result.getMethod().getMethodName());
+            line.put("parameters", Arrays.deepToString(result.getParameters()));
+            line.put("status", status);
+            line.put("startMillis", result.getStartMillis());
+            line.put("durationMs", Math.max(0, result.getEndMillis() - result.getStartMillis()));
+            line.put("thread", Thread.currentThread().getName());
+            if (result.getThrowable() != null) {
+                line.put("error", String.valueOf(result.getThrowable()));
+            }
+            StringBuilder json = new StringBuilder();
+            new Json().newOutput(json).setPrettyPrint(false).write(line);
+            return json.toString();
+        }
+
+        private static String toTestCase(ITestResult result, String status, double durationSeconds) {
+            String testName = result.getMethod().getMethodName()
+                    + (result.getParameters().length == 0 ? "" : Arrays.deepToString(result.getParameters()));
+            StringBuilder xml = new StringBuilder(String.format(Locale.ROOT, "  <testcase classname=\"%s\" name=\"%s\" time=\"%.3f\"",
+                    escape(result.getTestClass().getName()), escape(testName), durationSeconds));
+            Throwable error = result.getThrowable();
+            if (status.equals("SKIP")) {
+                xml.append(">\n    <skipped/>\n  </testcase>\n");
+            } else if (status.equals("FAIL")) {
+                StringWriter stackTrace = new StringWriter();
+                if (error != null) {
+                    error.printStackTrace(new PrintWriter(stackTrace));
+                }
+                xml.append(">\n    <failure message=\"").append(escape(error == null ? "" : String.valueOf(error.getMessage())))
+                        .append("\" type=\"").append(error == null ? "" : error.getClass().getName()).append("\"><![CDATA[")
+                        .append(stripControlCharacters(stackTrace.toString()).replace("]]>", "]]]]><![CDATA[>"))
+                        .append("]]></failure>\n  </testcase>\n");
+            } else {
+                xml.append("/>\n");
+            }
+            return xml.toString();
+        }
+
+        private static String escape(String text) {
+            return stripControlCharacters(text).replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+        }
+
+        // Control characters are not allowed in XML 1.0
+        private static String stripControlCharacters(String text) {
+            return text.replaceAll("[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F]", "");
+        }
+
+        /**
+         * Writes text at a position, returning the number of bytes written. The channel has no buffer of its own, so
+         * the text reaches the OS at once and outlives a crashed JVM; it is not forced to the disk.
+         */
+        private static int write(FileChannel channel, long position, String text) throws IOException {
+            ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            int length = bytes.remaining();
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+            return length;
+        }
+    }
+}
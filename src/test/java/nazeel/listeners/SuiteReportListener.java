@@ -0,0 +1,19 @@
+package nazeel.listeners;
+
+import nazeel.utils.EmulationProfile;
+import nazeel.utils.SoakMonitor;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+
+/**
+ * TestNG listener writing the reports that cover the whole suite once it finishes: the step durations per
+ * {@link EmulationProfile} and the drift summary of the {@link SoakMonitor}. Each does nothing when its mode is off.
+ */
+public class SuiteReportListener implements ISuiteListener {
+
+    @Override
+    public void onFinish(ISuite suite) {
+        EmulationProfile.report();
+        SoakMonitor.report();
+    }
+}
@@ -0,0 +1,158 @@
+package nazeel.listeners;
+
+import nazeel.utils.Config;
+import nazeel.utils.EmulationProfile;
+import nazeel.utils.Reports;
+import nazeel.utils.Step;
+import nazeel.utils.TimingHistory;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TestNG listener recording every test and step duration into the {@link TimingHistory}
+ * and comparing the current run against the rolling baseline of the previous passing runs.
+ * <p>
+ * A step regresses when its duration exceeds p95 + k * MAD of its baseline. Settings:
+ * - nazeel.regression.mode: "warn" (default) prints the regressions, "fail" fails the test, "off" disables the check.
+ * - nazeel.regression.window: number of previous passing durations in the baseline (default 20).
+ * - nazeel.regression.minSamples: baseline size needed before a step is judged (default 5).
+ * - nazeel.regression.k: MAD multiplier (default 3).
+ * - nazeel.regression.minDeltaMs: ignores slowdowns smaller than this many milliseconds (default 250).
+ */
+public class TimingHistoryListener implements IInvokedMethodListener, ISuiteListener {
+    // Name under which the whole test duration is recorded
+    public static final String TOTAL = "<total>";
+
+    // Steps finished by the test running on each thread
+    private static final ThreadLocal<List<Step>> finishedSteps = new ThreadLocal<>();
+
+    // Start time of the test running on each thread
+    private static final ThreadLocal<Long> testStartNanos = new ThreadLocal<>();
+
+    static {
+        Step.addListener(new Step.Listener() {
+            @Override
+            public void stepFinished(Step step) {
+                List<Step> steps = finishedSteps.get();
+                if (steps != null) {
+                    steps.add(step);
+                }
+            }
+        });
+    }
+
+    // Store and baseline, resolved on first use so suite parameters loaded by Hooks are honored
+    private TimingHistory history;
+    private Map<String, long[]> baseline;
+    private volatile String runId = String.valueOf(System.currentTimeMillis());
+
+    @Override
+    public synchronized void onStart(ISuite suite) {
+        runId = String.valueOf(System.currentTimeMillis());
+        history = null;
+        baseline = null;
+    }
+
+    /**
+     * Opens the store in the history folder configured once the suite parameters are loaded.
+     */
+    private synchronized TimingHistory history() {
+        if (history == null) {
+            history = new TimingHistory();
+        }
+        return history;
+    }
+
+    /**
+     * Reads the baseline of the previous runs on first use, before this run appends to the store.
+     */
+    private synchronized Map<String, long[]> baseline() {
+        if (baseline == null) {
+            baseline = history().baseline(Config.getInt("nazeel.regression.window", 20));
+        }
+        return baseline;
+    }
+
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (method.isTestMethod()) {
+            finishedSteps.set(new ArrayList<>());
+            testStartNanos.set(System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (!method.isTestMethod() || finishedSteps.get() == null) {
+            return;
+        }
+        List<Step> steps = finishedSteps.get();
+        Map<String, long[]> previous = baseline();
+        long testDurationMs = (System.nanoTime() - testStartNanos.get()) / 1_000_000;
+        finishedSteps.remove();
+        testStartNanos.remove();
+
+        // Runs under an emulation profile keep their own baseline
+        String test = EmulationProfile.label(testResult.getMethod().getMethodName());
+        String status = testResult.isSuccess() ? "PASS" : "FAIL";
+        long now = System.currentTimeMillis();
+
+        List<TimingHistory.Entry> entries = new ArrayList<>();
+        for (Step step : steps) {
+            entries.add(new TimingHistory.Entry(now, runId, test, step.name(), step.durationNanos() / 1_000_000, status));
+        }
+        entries.add(new TimingHistory.Entry(now, runId, test, TOTAL, testDurationMs, status));
+        history().append(entries);
+        EmulationProfile.collect(entries);
+
+        String mode = Config.get("nazeel.regression.mode", "warn");
+        if (mode.equals("off") || !testResult.isSuccess()) {
+            return;
+        }
+        List<String> regressions = findRegressions(entries, previous);
+        if (regressions.isEmpty()) {
+            return;
+        }
+        String message = "Latency regression in " + test + ": " + String.join("; ", regressions);
+        if (mode.equals("fail")) {
+            testResult.setStatus(ITestResult.FAILURE);
+            testResult.setThrowable(new AssertionError(message));
+        } else {
+            Reports.warn(message);
+        }
+    }
+
+    /**
+     * Compares each recorded duration with the threshold of its baseline.
+     */
+    private List<String> findRegressions(List<TimingHistory.Entry> entries, Map<String, long[]> previous) {
+        int minSamples = Config.getInt("nazeel.regression.minSamples", 5);
+        double k = Config.getDouble("nazeel.regression.k", 3);
+        long minDeltaMs = Config.getInt("nazeel.regression.minDeltaMs", 250);
+
+        List<String> regressions = new ArrayList<>();
+        for (TimingHistory.Entry entry : entries) {
+            long[] durations = previous.get(TimingHistory.key(entry.test(), entry.step()));
+            if (durations == null || durations.length < minSamples) {
+                continue;
+            }
+            double threshold = TimingHistory.threshold(durations, k);
+            long[] sorted = durations.clone();
+            Arrays.sort(sorted);
+            double median = TimingHistory.percentile(sorted, 50);
+            if (entry.durationMs() > threshold && entry.durationMs() - median >= minDeltaMs) {
+                regressions.add(String.format("'%s' took %d ms (threshold %.0f ms, median %.0f ms over %d runs)",
+                        entry.step(), entry.durationMs(), threshold, median, durations.length));
+            }
+        }
+        return regressions;
+    }
+}
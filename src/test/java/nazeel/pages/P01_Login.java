@@ -63,4 +63,40 @@ public class P01_Login {
     public WebElement getPropertyTestOne() {
         return Hooks.Browser.getDriver().findElement(propertyTestOneSelection);
     }
+
+    /**
+     * Gets the locator for the username input field.
+     *
+     * @return By locator of the username input field.
+     */
+    public By getUsernameLocator() {
+        return usernameField;
+    }
+
+    /**
+     * Gets the locator for the password input field.
+     *
+     * @return By locator of the password input field.
+     */
+    public By getPasswordLocator() {
+        return passwordField;
+    }
+
+    /**
+     * Gets the locator for the access code input field.
+     *
+     * @return By locator of the access code input field.
+     */
+    public By getAccessCodeLocator() {
+        return accessCodeField;
+    }
+
+    /**
+     * Gets the locator for the login button.
+     *
+     * @return By locator of the login button.
+     */
+    public By getLoginButtonLocator() {
+        return loginButton;
+    }
 }
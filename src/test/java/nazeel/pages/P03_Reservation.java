@@ -1,11 +1,14 @@
 package nazeel.pages;
 
 import nazeel.Hooks;
+import nazeel.utils.Locators;
+import nazeel.utils.Reports;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.support.ui.ExpectedConditions;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Page Object Model for the Reservation Page in the Nazeel system.
@@ -13,9 +16,55 @@ import java.util.List;
  */
 public class P03_Reservation {
 
+    /**
+     * Summary of a unit card in the units view, read without holding a WebElement per card.
+     *
+     * @param index      The position of the card in the units grid.
+     * @param unitNumber The unit number (or name) shown on the card.
+     * @param unitType   The unit type shown on the card, empty when not displayed.
+     * @param status     The unit status shown on the card.
+     * @param available  true if the unit offers the "Add Reservation" action.
+     */
+    public record UnitCard(int index, String unitNumber, String unitType, String status, boolean available) {
+    }
+
+    // Script reading every unit card of the grid in a single call; the unit number is null when the card shows none.
+    // Like the number locator, the type and status selectors are not yet checked against the live grid;
+    // they read empty when they miss
+    private static final String SCAN_UNITS_SCRIPT = Locators.RESOLVER + """
+            var addButton = arguments[1], number = arguments[2];
+            return nazeelFind(arguments[0], true).map(function (card, index) {
+                function text(selector) {
+                    var element = card.querySelector(selector);
+                    return element ? element.textContent.trim() : '';
+                }
+                var numberElement = nazeelFind(number, false, card);
+                var available = nazeelFind(addButton, false, card) !== null;
+                return {
+                    index: index,
+                    unitNumber: numberElement ? numberElement.textContent.trim() || null : null,
+                    unitType: text('[class*="unit-card__type"], [class*="unit-type"]'),
+                    status: text('[class*="unit-card__status"], [class*="unit-status"]') || (available ? 'Vacant' : 'Occupied'),
+                    available: available
+                };
+            });
+            """;
+
+    // Script returning one unit card, or its "Add Reservation" button, optionally scrolling the card into view
+    private static final String UNIT_CARD_SCRIPT = Locators.RESOLVER + """
+            var card = nazeelFind(arguments[0], true)[arguments[1]];
+            if (!card) return null;
+            if (arguments[3]) card.scrollIntoView({block: 'center', inline: 'center'});
+            return arguments[2] ? nazeelFind(arguments[2], false, card) : card;
+            """;
+
     // Locator for the unit cards displayed on the reservation page
     private final By unitsCards = By.cssSelector("div[class='col-lg-12 pdr-0']>div");
 
+    // Locator for the unit number label inside a unit card; not yet checked against the live grid, so cards it
+    // misses are left out of the scan rather than failing it
+    private final By unitCardNumber = By.cssSelector("[class*='unit-card__number']");
+
     // Locator for the "Add Reservation" buttons on the unit cards
     private final By addReservationButtons = By.cssSelector("div[class = 'unit-card__action--primary us-add ng-star-inserted']");
 
@@ -28,9 +77,6 @@ public class P03_Reservation {
     // Locator for the reservation source dropdown list
     private final By reservationSourceDropList = By.cssSelector(".col-md-5>kendo-dropdownlist>span[class='k-dropdown-wrap k-state-default']");
 
-    // Locator for the visit purpose options displayed in the dropdown
-    private final By visitPurposeOptions = By.cssSelector("div[class='k-list-scroller']>ul>li");
-
     // Locator for the page title on the new reservation page
     private final By newReservationPageTitle = By.cssSelector("h2[class = 'page-header__title ng-star-inserted']");
 
@@ -49,9 +95,6 @@ public class P03_Reservation {
     // Locator for the days displayed in the calendar dialog
     private final By daysInCalendar = By.cssSelector("table.p-datepicker-calendar td span");
 
-    // Locator for the options in the reservation source dropdown
-    private final By reservationSourceOptions = By.cssSelector("div[class='k-list-scroller']>ul>li[role='option']");
-
     // Locator for the "Select Guest Now" button
     private final By selectGuestNowButton = By.cssSelector("button[class='n-button n-button--primary u-m-end-15']");
 
@@ -94,6 +137,10 @@ public class P03_Reservation {
     // Locator for the success message displayed after a reservation is successfully made
     private final By reservationSuccessMessage = By.cssSelector("div.toast-success[style='display: block;']>div.toast-message");
 
+    // Locator for the ID number of the guest on the opened reservation; not yet checked against the live page,
+    // so the reservation cleanup skips a reservation on which it finds no single match
+    private final By reservationGuestIdNumber = By.cssSelector("[class*='guest'] [class*='id-number']");
+
     /**
      * Retrieves a list of WebElements representing the unit cards.
      *
@@ -112,6 +159,53 @@ public class P03_Reservation {
         return Hooks.Browser.getDriver().findElements(addReservationButtons);
     }
 
+    /**
+     * Reads the index, unit number, type, status and availability of every unit card in one script call.
+     * The unit number keys the unit leases and the reservation ledger, so cards without one are left out
+     * with a warning instead of being guessed.
+     *
+     * @return The unit cards with a unit number, in grid order.
+     */
+    @SuppressWarnings("unchecked")
+    public List<UnitCard> scanUnitsGrid() {
+        List<Map<String, Object>> cards = (List<Map<String, Object>>) ((JavascriptExecutor) Hooks.Browser.getDriver())
+                .executeScript(SCAN_UNITS_SCRIPT, Locators.toScriptArgument(unitsCards),
+                        Locators.toScriptArgument(addReservationButtons), Locators.toScriptArgument(unitCardNumber));
+        List<UnitCard> unitCards = cards.stream()
+                .filter(card -> card.get("unitNumber") != null)
+                .map(card -> new UnitCard(((Number) card.get("index")).intValue(), (String) card.get("unitNumber"),
+                        (String) card.get("unitType"), (String) card.get("status"), (Boolean) card.get("available")))
+                .toList();
+        if (unitCards.size() < cards.size()) {
+            Reports.warn((cards.size() - unitCards.size()) + " of " + cards.size()
+                    + " unit cards have no unit number matching " + unitCardNumber + " and were left out");
+        }
+        return unitCards;
+    }
+
+    /**
+     * Scrolls a unit card into view and retrieves it.
+     *
+     * @param cardIndex The index of the card in the units grid.
+     * @return WebElement for the unit card, or null if there is no such card.
+     */
+    public WebElement revealUnitCard(int cardIndex) {
+        return (WebElement) ((JavascriptExecutor) Hooks.Browser.getDriver())
+                .executeScript(UNIT_CARD_SCRIPT, Locators.toScriptArgument(unitsCards), cardIndex, null, true);
+    }
+
+    /**
+     * Retrieves the "Add Reservation" button of a unit card.
+     *
+     * @param cardIndex The index of the card in the units grid.
+     * @return WebElement for the card's add reservation button, or null if the card has none.
+     */
+    public WebElement getAddReservationButton(int cardIndex) {
+        return (WebElement) ((JavascriptExecutor) Hooks.Browser.getDriver())
+                .executeScript(UNIT_CARD_SCRIPT, Locators.toScriptArgument(unitsCards), cardIndex,
+                        Locators.toScriptArgument(addReservationButtons), false);
+    }
+
     /**
      * Retrieves the WebElement for the check-in date button.
      *
@@ -131,31 +225,21 @@ public class P03_Reservation {
     }
 
     /**
-     * Retrieves the WebElement for the visit purpose dropdown list.
+     * Retrieves the locator for the visit purpose dropdown list.
      *
-     * @return WebElement for the visit purpose dropdown list.
+     * @return By locator of the visit purpose dropdown list.
      */
-    public WebElement getVisitPurposeDropList() {
-        return Hooks.Browser.getDriver().findElement(visitPurposeDropList);
+    public By getVisitPurposeDropListLocator() {
+        return visitPurposeDropList;
     }
 
     /**
-     * Retrieves the WebElement for the reservation source dropdown list.
+     * Retrieves the locator for the reservation source dropdown list.
      *
-     * @return WebElement for the reservation source dropdown list.
+     * @return By locator of the reservation source dropdown list.
      */
-    public WebElement getReservationSourceDropList() {
-        return Hooks.Browser.getDriver().findElement(reservationSourceDropList);
-    }
-
-    /**
-     * Retrieves a list of WebElements representing the visit purpose options in the dropdown.
-     *
-     * @return List of WebElements for visit purpose options.
-     */
-    public List<WebElement> getVisitPurposeOptions() {
-        Hooks.Browser.explicitWait(5).until(ExpectedConditions.presenceOfAllElementsLocatedBy(visitPurposeOptions));
-        return Hooks.Browser.getDriver().findElements(visitPurposeOptions);
+    public By getReservationSourceDropListLocator() {
+        return reservationSourceDropList;
     }
 
     /**
@@ -221,15 +305,6 @@ public class P03_Reservation {
         return Hooks.Browser.getDriver().findElements(daysInCalendar);
     }
 
-    /**
-     * Retrieves a list of WebElements representing the options in the reservation source dropdown list.
-     *
-     * @return List of WebElements for reservation source options.
-     */
-    public List<WebElement> getReservationSourceOptions() {
-        return Hooks.Browser.getDriver().findElements(reservationSourceOptions);
-    }
-
     /**
      * Retrieves the WebElement for the "Select Guest Now" button.
      *
@@ -338,6 +413,15 @@ public class P03_Reservation {
         return Hooks.Browser.getDriver().findElement(paymentMethodInput);
     }
 
+    /**
+     * Retrieves the locator for the input field to select the payment method.
+     *
+     * @return By locator of the payment method input field.
+     */
+    public By getPaymentMethodLocator() {
+        return paymentMethodInput;
+    }
+
     /**
      * Retrieves the WebElement for the "Save and Continue" button.
      *
@@ -347,6 +431,15 @@ public class P03_Reservation {
         return Hooks.Browser.getDriver().findElement(saveAndContinueButton);
     }
 
+    /**
+     * Retrieves a list of WebElements showing the ID number of the guest on the opened reservation.
+     *
+     * @return List of WebElements for the guest ID number; empty if the page shows none.
+     */
+    public List<WebElement> getReservationGuestIdNumbers() {
+        return Hooks.Browser.getDriver().findElements(reservationGuestIdNumber);
+    }
+
     /**
      * Retrieves the WebElement for the success message displayed after a reservation is successfully made.
      *
@@ -4,13 +4,29 @@ import nazeel.Hooks;
 import nazeel.actions.A01_Login;
 import nazeel.actions.A02_Home;
 import nazeel.actions.A03_Reservation;
+import nazeel.actions.A03_Reservation.UnitSelectionPolicy;
+import nazeel.pages.P03_Reservation.UnitCard;
+import nazeel.utils.CircuitBreaker;
+import nazeel.utils.Config;
+import nazeel.utils.GuestPool;
+import nazeel.utils.PagePerformance;
+import nazeel.utils.ReservationLedger;
+import nazeel.utils.SoakMonitor;
+import nazeel.utils.Step;
+import nazeel.utils.TabWorkflow;
 import org.testng.Assert;
+import org.testng.SkipException;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Test Suite for Reservation functionality in the Nazeel system.
@@ -45,84 +61,245 @@ public class TS01_Reservation extends Hooks {
             suiteName = "Reservation",
             description = "Validate that the reservation is checked-Out successfully")
     public void tc01_ValidateReservation() {
+        checkOutReservation("tc01_ValidateReservation");
+
+        // Optional: Pause execution for observation
+        try {
+            Thread.sleep(Duration.ofSeconds(10)); // Pause for 10 seconds
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e); // Handle interruption exception
+        }
+    }
+
+    /**
+     * Test Case: Validate several reservations driven side by side in tabs of one browser session.
+     * <p>
+     * Logs in once, then runs nazeel.tabs reservation flows in as many tabs, interleaved by the {@link TabWorkflow}:
+     * while one tab waits for the backend, the others are driven. In the "tabs" group, which the default run
+     * excludes and testng-tabs.xml runs; skipped unless nazeel.tabs is at least 2, and nazeel.guests must list at
+     * least as many guests as tabs.
+     */
+    @Test(testName = "TC02 :: Concurrent reservations in tabs CheckedOut successfully!",
+            suiteName = "Reservation",
+            groups = "tabs",
+            description = "Validate that reservations driven in several tabs of one session are checked-Out successfully")
+    public void tc02_ValidateConcurrentReservations() {
+        int tabs = Config.getInt("nazeel.tabs", 1);
+        if (tabs < 2) {
+            throw new SkipException("Set nazeel.tabs to 2 or more to run the reservation flows in tabs.");
+        }
+        // Every tab needs its own guest; fail now rather than after the guest lease timeout
+        int guests = GuestPool.local().provision().size();
+        if (guests < tabs) {
+            throw new IllegalStateException("nazeel.guests lists " + guests + " guests for " + tabs
+                    + " tabs; list at least one guest per tab.");
+        }
+
+        // Step 1 and 2: Log in and select the property once for all tabs
+        try (Step step = Step.start("Step 1: Log in")) {
+            CircuitBreaker.precondition("login", () -> loginActions.login("Mahmoud Gamal", "123456Mm&&", "01373"));
+        }
+        try (Step step = Step.start("Step 2: Select property")) {
+            CircuitBreaker.precondition("property selection", () -> {
+                Hooks.Browser.explicitWait(5).until(driver -> loginActions.isPropertyTestOneDisplayed());
+                loginActions.clickPropertyTestOne(); // Click "Test One" property
+            });
+            // The tabs open at the current page, so it must be the home page already
+            Hooks.Browser.explicitWait(10).until(driver -> homeActions.isLaterButtonDisplayed());
+        }
+
+        // One flow per tab, each with its own guest
+        List<TabWorkflow.Flow> flows = new ArrayList<>();
+        for (int tab = 1; tab <= tabs; tab++) {
+            flows.add(reservationFlow("Tab " + tab, GuestPool.lease().guestId()));
+        }
+        TabWorkflow.run(flows, Duration.ofSeconds(10));
+    }
+
+    /**
+     * Test Case: Soak the reservation cycle of tc01 for hours and track how the system degrades.
+     * <p>
+     * Runs one cycle per invocation until nazeel.soak.hours have passed, see testng-soak.xml, so every cycle goes
+     * through the Hooks lifecycle. The {@link SoakMonitor} records the step durations, failures, session memory and
+     * backend response times of every cycle and flags drift at the end of the suite. Without nazeel.soak.hours
+     * there are no cycles to run.
+     *
+     * @param cycle The cycle number, starting at 1.
+     */
+    @Test(testName = "TC03 :: Reservation cycle soak",
+            suiteName = "Reservation",
+            description = "Repeat the reservation check-in/check-out cycle for hours and track its degradation",
+            dataProvider = "soakCycles")
+    public void tc03_SoakReservationCycle(int cycle) {
+        checkOutReservation("tc03_SoakReservationCycle");
+    }
+
+    /**
+     * Supplies the soak cycles lazily, until the soak duration has passed.
+     *
+     * @return The cycle numbers.
+     */
+    @DataProvider(name = "soakCycles")
+    public Iterator<Object[]> soakCycles() {
+        return SoakMonitor.cycles();
+    }
+
+    /**
+     * Logs in, checks a guest into a random free unit and checks the reservation out, validating the success message.
+     *
+     * @param test The name of the calling test, recorded in the reservation ledger.
+     */
+    private void checkOutReservation(String test) {
         // Formatter for date fields used during the reservation process
         DateTimeFormatter checkInOutDatesFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
-        // Step 1: Log in with valid credentials
-        loginActions.enterUsername("Mahmoud Gamal") // Enter username
-                .enterPassword("123456Mm&&") // Enter password
-                .enterAccessCode("01373") // Enter access code
-                .clickLogin(); // Submit the login form
+        // Lease a guest no other running test uses; it is returned to the pool on teardown
+        String guestId = GuestPool.lease().guestId();
+
+        // Step 1: Check the login page performance budget, then log in with valid credentials
+        try (Step step = Step.start("Step 1: Log in")) {
+            PagePerformance.capture("login");
+            // Fill and submit the login form in one call; repeated login failures stop the whole run
+            CircuitBreaker.precondition("login", () -> loginActions.login("Mahmoud Gamal", "123456Mm&&", "01373"));
+        }
 
         // Step 2: Wait for the first property to be displayed and select it
-        Hooks.Browser.explicitWait(5).until(driver -> loginActions.isPropertyTestOneDisplayed());
-        loginActions.clickPropertyTestOne(); // Click "Test One" property
+        try (Step step = Step.start("Step 2: Select property")) {
+            CircuitBreaker.precondition("property selection", () -> {
+                Hooks.Browser.explicitWait(5).until(driver -> loginActions.isPropertyTestOneDisplayed());
+                loginActions.clickPropertyTestOne(); // Click "Test One" property
+            });
+        }
 
         // Step 3: Handle the User Verification popup and navigate to the Reservations tab
-        Hooks.Browser.explicitWait(10).until(driver -> homeActions.isLaterButtonDisplayed());
-        Hooks.Browser.implicitWait(3); // Add implicit wait for stability
-        homeActions.clickLaterButton() // Dismiss verification popup
-                .selectReservationsTab(); // Navigate to the reservations page
+        try (Step step = Step.start("Step 3: Open reservations")) {
+            Hooks.Browser.explicitWait(10).until(driver -> homeActions.isLaterButtonDisplayed());
+            Hooks.Browser.implicitWait(3); // Add implicit wait for stability
+            homeActions.clickLaterButton() // Dismiss verification popup
+                    .selectReservationsTab(); // Navigate to the reservations page
+        }
 
-        // Step 4: Wait for unit cards to load and hover over a random card
-        Hooks.Browser.explicitWait(10).until(driver -> reservationActions.isUnitsCardsDisplayed());
-        int hoveredCardNum = reservationActions.hoverRandomCard(); // Hover over a random unit card
+        // Step 4: Wait for unit cards to load and hover over a random available card
+        UnitCard hoveredUnit;
+        try (Step step = Step.start("Step 4: Hover unit card")) {
+            Hooks.Browser.explicitWait(10).until(driver -> reservationActions.isUnitsCardsDisplayed());
+            PagePerformance.capture("reservations"); // Check the units view performance budget
+            hoveredUnit = reservationActions.hoverUnit(UnitSelectionPolicy.random()); // Lease and hover over a random free unit
+        }
 
         // Step 5: Click the "Add Reservation" button for the selected card
-        Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isAddReservationButtonDisplayed(hoveredCardNum));
-        reservationActions.clickAddReservationButton(hoveredCardNum); // Open the reservation form
+        try (Step step = Step.start("Step 5: Add reservation")) {
+            Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isAddReservationButtonDisplayed(hoveredUnit.index()));
+            reservationActions.clickAddReservationButton(hoveredUnit.index()); // Open the reservation form
+        }
 
         // Step 6: Enter Check-In and Check-Out dates
-        Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isNewReservationPageTitleDisplayed());
-        reservationActions.enterCheckInDate(LocalDate.now().minusDays(2).format(checkInOutDatesFormatter)); // Check-In: Today - 2
+        try (Step step = Step.start("Step 6: Enter dates")) {
+            Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isNewReservationPageTitleDisplayed());
+            PagePerformance.capture("newReservation"); // Check the new reservation form performance budget
+            reservationActions.enterCheckInDate(LocalDate.now().minusDays(2).format(checkInOutDatesFormatter)); // Check-In: Today - 2
 
-        Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isCheckOutDateDisplayed());
-        reservationActions.enterCheckOutDate(LocalDate.now().plusDays(1).format(checkInOutDatesFormatter)) // Check-Out: Today + 1
-                .clickVisitPurposeDropList(); // Open Visit Purpose dropdown
-
-        // Step 7: Select Visit Purpose and Reservation Source options
-        Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isVisitPurposeOptionsDisplayed());
-        reservationActions.selectRandomVisitPurposeOptions(); // Select a random Visit Purpose
+            Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isCheckOutDateDisplayed());
+            reservationActions.enterCheckOutDate(LocalDate.now().plusDays(1).format(checkInOutDatesFormatter)); // Check-Out: Today + 1
+        }
 
-        reservationActions.clickReservationSourceDropList(); // Open Reservation Source dropdown
-        Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isReservationSourceOptionsDisplayed());
-        reservationActions.selectRandomReservationSourceOptions() // Select a random Reservation Source
-                .clickSelectGuestNowButton(); // Open guest selection popup
+        // Step 7: Select Visit Purpose and Reservation Source options, each in one call without opening the list
+        try (Step step = Step.start("Step 7: Select visit purpose and source")) {
+            reservationActions.selectRandomVisitPurposeOptions() // Select a random Visit Purpose
+                    .selectRandomReservationSourceOptions() // Select a random Reservation Source
+                    .clickSelectGuestNowButton(); // Open guest selection popup
+        }
 
         // Step 8: Search for a guest and confirm selection
-        Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isNewGuestDialogDisplayed());
-        reservationActions.enterSearchGuestID("123456789") // Enter Guest ID
-                .clickSearchGuestButton() // Search for the guest
-                .selectAndHoverFoundGuest() // Hover over the search result
-                .clickConfirmSearchButton() // Confirm the selected guest
-                .clickCheckInButton(); // Finalize the reservation check-in
+        try (Step step = Step.start("Step 8: Select guest and check in")) {
+            Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isNewGuestDialogDisplayed());
+            reservationActions.enterSearchGuestID(guestId) // Enter the leased Guest ID
+                    .clickSearchGuestButton() // Search for the guest
+                    .selectAndHoverFoundGuest() // Hover over the search result
+                    .clickConfirmSearchButton() // Confirm the selected guest
+                    .clickCheckInButton(); // Finalize the reservation check-in
+        }
 
         // Step 9: Confirm Check-In
-        Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isConfirmCheckInButtonDisplayed());
-        reservationActions.clickConfirmCheckInButton(); // Confirm Check-In action
+        try (Step step = Step.start("Step 9: Confirm check-in")) {
+            Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isConfirmCheckInButtonDisplayed());
+            reservationActions.clickConfirmCheckInButton(); // Confirm Check-In action
 
-        Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isCheckOutButtonDisplayed());
-        reservationActions.clickCheckOutButton(); // Proceed to Check-Out
+            Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isCheckOutButtonDisplayed());
+            // The check-in is confirmed: record the reservation so it is cleaned up if the test fails before check-out
+            ReservationLedger.opened(hoveredUnit.unitNumber(), guestId, test);
+            reservationActions.clickCheckOutButton(); // Proceed to Check-Out
+        }
 
         // Step 10: Confirm Check-Out and complete payment
-        Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isConfirmCheckOutButtonDisplayed());
-        reservationActions.clickConfirmCheckOutButton() // Confirm Check-Out action
-                .clickReceiptVoucherButton() // Add receipt voucher
-                .enterPaymentMethod("Cash"); // Select payment method as Cash
+        try (Step step = Step.start("Step 10: Check out and pay")) {
+            Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isConfirmCheckOutButtonDisplayed());
+            reservationActions.clickConfirmCheckOutButton() // Confirm Check-Out action
+                    .clickReceiptVoucherButton() // Add receipt voucher
+                    .enterPaymentMethod("Cash"); // Select payment method as Cash
 
-        Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isSaveAndContinueButtonDisplayed());
-        reservationActions.clickSaveAndContinueButton(); // Save and complete the transaction
+            Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isSaveAndContinueButtonDisplayed());
+            reservationActions.clickSaveAndContinueButton(); // Save and complete the transaction
+        }
 
         // Step 11: Validate the success message
-        Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isSuccessfulMessageDisplayed());
-        Assert.assertTrue(reservationActions.getSuccessfulMessageText().toLowerCase().contains("successfully"),
-                "Success message not displayed within timeout"); // Assertion for success message
-
-        // Optional: Pause execution for observation
-        try {
-            Thread.sleep(Duration.ofSeconds(10)); // Pause for 10 seconds
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e); // Handle interruption exception
+        try (Step step = Step.start("Step 11: Validate success message")) {
+            Hooks.Browser.explicitWait(5).until(driver -> reservationActions.isSuccessfulMessageDisplayed());
+            Assert.assertTrue(reservationActions.getSuccessfulMessageText().toLowerCase().contains("successfully"),
+                    "Success message not displayed within timeout"); // Assertion for success message
+            ReservationLedger.closed(hoveredUnit.unitNumber()); // The reservation is checked out
         }
     }
+
+    /**
+     * Builds the reservation flow of tc01 as tab workflow stages, from the home page to the success message.
+     *
+     * @param name    The flow name, prefixing its step names.
+     * @param guestId The guest leased for the reservation.
+     * @return The reservation flow.
+     */
+    private TabWorkflow.Flow reservationFlow(String name, String guestId) {
+        DateTimeFormatter checkInOutDatesFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+        // Unit chosen in the "Hover unit card" stage, used by the later stages
+        AtomicReference<UnitCard> hoveredUnit = new AtomicReference<>();
+        return new TabWorkflow.Flow(name)
+                .then("Step 3: Open reservations", driver -> homeActions.isLaterButtonDisplayed(),
+                        () -> homeActions.clickLaterButton().selectReservationsTab())
+                .then("Step 4: Hover unit card", driver -> reservationActions.isUnitsCardsDisplayed(),
+                        () -> hoveredUnit.set(reservationActions.hoverUnit(UnitSelectionPolicy.random())))
+                .then("Step 5: Add reservation", driver -> reservationActions.isAddReservationButtonDisplayed(hoveredUnit.get().index()),
+                        () -> reservationActions.clickAddReservationButton(hoveredUnit.get().index()))
+                .then("Step 6: Enter check-in date", driver -> reservationActions.isNewReservationPageTitleDisplayed(),
+                        () -> reservationActions.enterCheckInDate(LocalDate.now().minusDays(2).format(checkInOutDatesFormatter)))
+                .then("Step 6: Enter check-out date", driver -> reservationActions.isCheckOutDateDisplayed(),
+                        () -> reservationActions.enterCheckOutDate(LocalDate.now().plusDays(1).format(checkInOutDatesFormatter)))
+                .then("Step 7: Select visit purpose and source",
+                        () -> reservationActions.selectRandomVisitPurposeOptions()
+                                .selectRandomReservationSourceOptions()
+                                .clickSelectGuestNowButton())
+                .then("Step 8: Select guest and check in", driver -> reservationActions.isNewGuestDialogDisplayed(), () -> {
+                    reservationActions.enterSearchGuestID(guestId)
+                            .clickSearchGuestButton()
+                            .selectAndHoverFoundGuest()
+                            .clickConfirmSearchButton()
+                            .clickCheckInButton();
+                })
+                .then("Step 9: Confirm check-in", driver -> reservationActions.isConfirmCheckInButtonDisplayed(),
+                        reservationActions::clickConfirmCheckInButton)
+                .then("Step 9: Check out", driver -> reservationActions.isCheckOutButtonDisplayed(), () -> {
+                    ReservationLedger.opened(hoveredUnit.get().unitNumber(), guestId, "tc02_ValidateConcurrentReservations");
+                    reservationActions.clickCheckOutButton();
+                })
+                .then("Step 10: Confirm check-out", driver -> reservationActions.isConfirmCheckOutButtonDisplayed(),
+                        () -> reservationActions.clickConfirmCheckOutButton()
+                                .clickReceiptVoucherButton()
+                                .enterPaymentMethod("Cash"))
+                .then("Step 10: Save payment", driver -> reservationActions.isSaveAndContinueButtonDisplayed(),
+                        reservationActions::clickSaveAndContinueButton)
+                .then("Step 11: Validate success message", driver -> reservationActions.isSuccessfulMessageDisplayed(), () -> {
+                    Assert.assertTrue(reservationActions.getSuccessfulMessageText().toLowerCase().contains("successfully"),
+                            name + ": success message not displayed");
+                    ReservationLedger.closed(hoveredUnit.get().unitNumber());
+                });
+    }
 }
@@ -0,0 +1,168 @@
+package nazeel.utils;
+
+import nazeel.Hooks;
+import org.openqa.selenium.WebDriver;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade over the action layer: every step returns a {@link CompletableFuture} instead of
+ * blocking the caller, so one controller thread can drive many browser sessions at once.
+ * <p>
+ * Each session owns a virtual thread on which its steps run one after the other, with the session bound as
+ * {@link Hooks.Browser#getDriver()}, so the existing action classes work unchanged:
+ * <pre>
+ * AsyncSession session = AsyncSession.open().join();
+ * session.call(homeActions, A02_Home::selectReservationsTab)
+ *         .thenCompose(home -> session.until(driver -> reservationActions.isUnitsCardsDisplayed(), 10))
+ *         .thenCompose(ready -> session.call(reservationActions, A03_Reservation::hoverRandomCard));
+ * </pre>
+ * Steps support timeouts and cancellation; a timed-out or cancelled step interrupts its session thread.
+ */
+public final class AsyncSession implements AutoCloseable {
+    private final WebDriver driver;
+    private final ExecutorService executor;
+
+    /**
+     * Wraps an existing browser session.
+     *
+     * @param driver The session to drive asynchronously.
+     */
+    public AsyncSession(WebDriver driver) {
+        this(driver, Executors.newSingleThreadExecutor(Thread.ofVirtual().name("async-session-", 0).factory()));
+    }
+
+    private AsyncSession(WebDriver driver, ExecutorService executor) {
+        this.driver = driver;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a new browser session without blocking the caller.
+     *
+     * @return The future session.
+     */
+    public static CompletableFuture<AsyncSession> open() {
+        ExecutorService executor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("async-session-", 0).factory());
+        return CompletableFuture.supplyAsync(Hooks.Browser::newSession, executor)
+                .thenApply(driver -> new AsyncSession(driver, executor));
+    }
+
+    /**
+     * Waits for all futures and collects their results in order.
+     *
+     * @param futures The futures to join, e.g. the same step fanned out over many sessions.
+     * @param <T>     The result type.
+     * @return The future list of results, failing if any future fails.
+     */
+    public static <T> CompletableFuture<List<T>> joinAll(List<CompletableFuture<T>> futures) {
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Runs a step on the session.
+     *
+     * @param step The step, typically calling action class methods.
+     * @param <T>  The step result type.
+     * @return The future step result.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> step) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            Hooks.Browser.bind(driver);
+            try {
+                result.complete(step.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                Hooks.Browser.bind(null);
+            }
+        });
+        // Interrupt the session thread when the caller gives up on the step
+        result.whenComplete((value, error) -> {
+            if (error instanceof CancellationException || error instanceof TimeoutException) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs a step on the session, failing it with a {@link TimeoutException} when it takes too long.
+     *
+     * @param step    The step, typically calling action class methods.
+     * @param timeout The maximum duration of the step.
+     * @param <T>     The step result type.
+     * @return The future step result.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> step, Duration timeout) {
+        return supply(step).orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a step without result on the session.
+     *
+     * @param step The step, typically calling action class methods.
+     * @return The future completed when the step is done.
+     */
+    public CompletableFuture<Void> run(Runnable step) {
+        return supply(() -> {
+            step.run();
+            return null;
+        });
+    }
+
+    /**
+     * Calls a method of an action class instance on the session.
+     *
+     * @param actions The action class instance, e.g. an A03_Reservation.
+     * @param step    The method to call, e.g. A03_Reservation::clickCheckOutButton.
+     * @param <A>     The action class type.
+     * @param <R>     The method result type.
+     * @return The future method result.
+     */
+    public <A, R> CompletableFuture<R> call(A actions, Function<A, R> step) {
+        return supply(() -> step.apply(actions));
+    }
+
+    /**
+     * Waits on the session until a condition holds, like {@code Hooks.Browser.explicitWait(...).until(...)}.
+     *
+     * @param condition The condition, returning a non-null, non-false value once met.
+     * @param seconds   The maximum wait in seconds.
+     * @param <V>       The condition value type.
+     * @return The future condition value, failing with a Selenium TimeoutException if it is not met in time.
+     */
+    public <V> CompletableFuture<V> until(Function<WebDriver, V> condition, int seconds) {
+        return supply(() -> Hooks.Browser.explicitWait(seconds).until(condition));
+    }
+
+    /**
+     * Returns the underlying browser session.
+     *
+     * @return The WebDriver instance of the session.
+     */
+    public WebDriver getDriver() {
+        return driver;
+    }
+
+    /**
+     * Stops the pending steps and quits the browser session.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        driver.quit();
+    }
+}
@@ -0,0 +1,148 @@
+package nazeel.utils;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Thin helper around the Chrome DevTools Protocol.
+ * Commands and events are addressed by their raw protocol names, so the harness does not depend
+ * on the versioned CDP bindings matching the installed Chrome.
+ */
+public final class Cdp {
+
+    /**
+     * Handler for requests paused by the Fetch domain.
+     */
+    @FunctionalInterface
+    public interface RequestHandler {
+        /**
+         * Handles a paused request.
+         *
+         * @param pausedRequest The Fetch.requestPaused event parameters.
+         * @return true if the handler continued, fulfilled or failed the request, false to let the next handler decide.
+         */
+        boolean handle(Map<String, Object> pausedRequest);
+    }
+
+    // Fetch interception state of every driver, so several features can share the single Fetch domain
+    private static final Map<WebDriver, Interception> interceptions = new WeakHashMap<>();
+
+    private Cdp() {
+    }
+
+    /**
+     * Returns the DevTools connection of a driver, creating its session on first use.
+     *
+     * @param driver The driver, possibly wrapped by a decorator.
+     * @return The DevTools connection.
+     */
+    public static DevTools session(WebDriver driver) {
+        DevTools devTools = ((HasDevTools) unwrap(driver)).getDevTools();
+        devTools.createSessionIfThereIsNotOne();
+        return devTools;
+    }
+
+    /**
+     * Sends a CDP command and returns its result.
+     *
+     * @param driver The driver to send the command through.
+     * @param method The protocol method, e.g. "Network.enable".
+     * @param params The command parameters.
+     * @return The command result.
+     */
+    public static Map<String, Object> send(WebDriver driver, String method, Map<String, Object> params) {
+        return session(driver).send(new Command<Map<String, Object>>(method, params, Json.MAP_TYPE));
+    }
+
+    /**
+     * Subscribes to a CDP event.
+     *
+     * @param driver  The driver to listen on.
+     * @param event   The protocol event, e.g. "Network.loadingFinished".
+     * @param handler The handler receiving the event parameters.
+     */
+    public static void on(WebDriver driver, String event, Consumer<Map<String, Object>> handler) {
+        session(driver).addListener(new Event<Map<String, Object>>(event, input -> input.read(Json.MAP_TYPE)), handler);
+    }
+
+    /**
+     * Adds request patterns to the Fetch domain of a driver and registers a handler for the paused requests.
+     * Requests no handler takes care of are continued unchanged.
+     *
+     * @param driver   The driver to intercept requests on.
+     * @param patterns The Fetch.RequestPattern objects to pause on.
+     * @param handler  The handler for paused requests.
+     */
+    public static void intercept(WebDriver driver, List<Map<String, Object>> patterns, RequestHandler handler) {
+        Interception interception;
+        synchronized (interceptions) {
+            interception = interceptions.computeIfAbsent(unwrap(driver), key -> new Interception(driver));
+        }
+        interception.add(patterns, handler);
+    }
+
+    /**
+     * Returns the driver underneath any decorator, as DevTools is only exposed by the real driver.
+     *
+     * @param driver The driver, possibly wrapped by a decorator.
+     * @return The innermost driver.
+     */
+    public static WebDriver unwrap(WebDriver driver) {
+        while (driver instanceof WrapsDriver wrapper) {
+            driver = wrapper.getWrappedDriver();
+        }
+        return driver;
+    }
+
+    /**
+     * Reads a number from CDP event parameters.
+     *
+     * @param params The event or result parameters.
+     * @param key    The parameter name.
+     * @return The value as a double, or 0 when missing.
+     */
+    public static double number(Map<String, Object> params, String key) {
+        return params.get(key) instanceof Number number ? number.doubleValue() : 0;
+    }
+
+    /**
+     * Fetch interception shared by all features of one driver.
+     */
+    private static final class Interception {
+        private final WebDriver driver;
+        private final List<Map<String, Object>> patterns = new ArrayList<>();
+        private final List<RequestHandler> handlers = new CopyOnWriteArrayList<>();
+
+        private Interception(WebDriver driver) {
+            this.driver = driver;
+            on(driver, "Fetch.requestPaused", this::dispatch);
+        }
+
+        private synchronized void add(List<Map<String, Object>> newPatterns, RequestHandler handler) {
+            patterns.addAll(newPatterns);
+            handlers.add(handler);
+            send(driver, "Fetch.enable", Map.of("patterns", List.copyOf(patterns)));
+        }
+
+        private void dispatch(Map<String, Object> pausedRequest) {
+            for (RequestHandler handler : handlers) {
+                if (handler.handle(pausedRequest)) {
+                    return;
+                }
+            }
+            send(driver, "Fetch.continueRequest", Map.of("requestId", pausedRequest.get("requestId")));
+        }
+    }
+}
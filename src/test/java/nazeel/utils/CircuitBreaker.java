@@ -0,0 +1,177 @@
+package nazeel.utils;
+
+import nazeel.pages.P01_Login;
+import org.openqa.selenium.support.ui.Sleeper;
+import org.testng.SkipException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stops the whole run at once when a precondition every test shares is broken, e.g. the staging login or the
+ * "Test One" property being down, instead of letting every worker wait out its own timeouts.
+ * <p>
+ * A preflight probe checks the login page before the suite. During the run, failures of the guarded preconditions
+ * are counted, and after nazeel.breaker.threshold consecutive failures (default 2) the breaker trips: pending tests
+ * are skipped and running tests are cancelled at their next explicit wait, all with the root cause. The trip is
+ * shared with forked JVMs through a marker file (nazeel.breaker.dir, default &lt;tmp&gt;/nazeel-breaker) valid for
+ * nazeel.breaker.openSeconds (default 600). nazeel.preflight=false disables the probe.
+ */
+public final class CircuitBreaker {
+    private static final Instant JVM_START = ProcessHandle.current().info().startInstant().orElse(Instant.now());
+
+    // Consecutive failures of the guarded preconditions
+    private static final AtomicInteger failures = new AtomicInteger();
+
+    // How often a closed breaker re-reads the marker of the sibling forks
+    private static final long MARKER_RECHECK_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private static volatile String cause;
+
+    // When the marker was last read, so waits waking up often do not hit the file system on every wake
+    private static volatile long markerCheckedNanos = System.nanoTime() - MARKER_RECHECK_NANOS;
+
+    private CircuitBreaker() {
+    }
+
+    /**
+     * Probes the login page before the suite, tripping the breaker when it is unreachable
+     * and clearing a trip left by an earlier run when it answers.
+     */
+    public static void preflight() {
+        if (!Config.getBoolean("nazeel.preflight", true)) {
+            return;
+        }
+        int timeoutSeconds = Config.getInt("nazeel.preflight.timeoutSeconds", 15);
+        String problem;
+        try {
+            HttpResponse<Void> response = HttpClient.newBuilder()
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .connectTimeout(Duration.ofSeconds(timeoutSeconds))
+                    .build()
+                    .send(HttpRequest.newBuilder(URI.create(P01_Login.URL)).timeout(Duration.ofSeconds(timeoutSeconds)).build(),
+                            HttpResponse.BodyHandlers.discarding());
+            problem = response.statusCode() >= 500 ? "HTTP " + response.statusCode() : null;
+        } catch (IOException e) {
+            problem = e.toString();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            problem = "interrupted";
+        }
+        if (problem != null) {
+            trip("Preflight: the login page " + P01_Login.URL + " is unavailable (" + problem + ")");
+            return;
+        }
+        // A trip of an earlier run does not outlive a healthy environment, unlike one of a sibling fork
+        try {
+            Path marker = marker();
+            if (Files.exists(marker) && Files.getLastModifiedTime(marker).toInstant().isBefore(JVM_START)) {
+                Files.deleteIfExists(marker);
+            }
+        } catch (IOException e) {
+            Reports.warn("could not clear the circuit breaker marker: " + e);
+        }
+    }
+
+    /**
+     * Runs a precondition shared by all tests, counting its failures towards tripping the breaker.
+     *
+     * @param name   The precondition name, e.g. "login".
+     * @param action The precondition steps.
+     */
+    public static void precondition(String name, Runnable action) {
+        check();
+        try {
+            action.run();
+        } catch (SkipException e) {
+            throw e;
+        } catch (RuntimeException | AssertionError e) {
+            int count = failures.incrementAndGet();
+            if (count >= Config.getInt("nazeel.breaker.threshold", 2)) {
+                trip("Precondition '" + name + "' failed " + count + " times in a row: " + e);
+            }
+            throw e;
+        }
+        failures.set(0);
+    }
+
+    /**
+     * Skips the calling test when the breaker is open.
+     *
+     * @throws SkipException with the root cause, if the breaker is open.
+     */
+    public static void check() {
+        String openCause = cause();
+        if (openCause != null) {
+            throw new SkipException("Circuit breaker open: " + openCause);
+        }
+    }
+
+    /**
+     * Wraps the sleeper of an explicit wait so the wait is cancelled as soon as the breaker trips.
+     *
+     * @param sleeper The sleeper to wrap.
+     * @return A sleeper checking the breaker before and after sleeping.
+     */
+    public static Sleeper checking(Sleeper sleeper) {
+        return duration -> {
+            check();
+            sleeper.sleep(duration);
+            check();
+        };
+    }
+
+    /**
+     * Returns the reason the breaker is open, tripped in this JVM or in a sibling fork; a trip of a sibling fork
+     * is seen within a second.
+     *
+     * @return The root cause, or null when the breaker is closed.
+     */
+    public static String cause() {
+        long now = System.nanoTime();
+        if (cause != null || now - markerCheckedNanos < MARKER_RECHECK_NANOS) {
+            return cause;
+        }
+        markerCheckedNanos = now;
+        Path marker = marker();
+        try {
+            if (Files.exists(marker) && Files.getLastModifiedTime(marker).toInstant()
+                    .isAfter(Instant.now().minusSeconds(Config.getInt("nazeel.breaker.openSeconds", 600)))) {
+                cause = Files.readString(marker);
+            }
+        } catch (IOException e) {
+            // The marker was removed meanwhile
+        }
+        return cause;
+    }
+
+    /**
+     * Opens the breaker for every worker.
+     */
+    private static synchronized void trip(String reason) {
+        if (cause != null) {
+            return;
+        }
+        cause = reason;
+        Reports.log("CIRCUIT BREAKER OPEN: " + reason + "; skipping the remaining tests.");
+        try {
+            Files.createDirectories(marker().getParent());
+            Files.writeString(marker(), reason);
+        } catch (IOException e) {
+            Reports.warn("could not share the circuit breaker state: " + e);
+        }
+    }
+
+    private static Path marker() {
+        return Path.of(Config.get("nazeel.breaker.dir",
+                Path.of(System.getProperty("java.io.tmpdir"), "nazeel-breaker").toString())).resolve("open");
+    }
+}
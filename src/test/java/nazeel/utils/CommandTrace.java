@@ -0,0 +1,178 @@
+package nazeel.utils;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.EventFiringDecorator;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Traces every WebDriver command sent by the tests, to find the steps spending the most browser round trips
+ * and the locators looked up again and again (N+1 lookups) instead of once.
+ * <p>
+ * Enabled with nazeel.commandTrace=true: browser sessions are then decorated with Selenium's
+ * {@link EventFiringDecorator}, and every command is attributed, with its latency, to the {@link Step} it ran in.
+ * {@link #report()} writes per step the round trips and their time to command-trace.csv, and the locators looked up
+ * at least nazeel.commandTrace.repeatThreshold times (default 2) within one step to repeated-lookups.csv.
+ */
+public final class CommandTrace implements WebDriverListener {
+    // Calls answered by the decorator itself, without a round trip to the browser
+    static final Set<String> LOCAL_CALLS = Set.of("manage", "switchTo", "navigate", "timeouts", "window",
+            "logs", "getWrappedDriver", "getWrappedElement", "getDevTools", "maybeGetDevTools", "getCapabilities",
+            "getSessionId", "toString", "hashCode", "equals");
+
+    private static final String NO_STEP = "<no step>";
+
+    private static final CommandTrace listener = new CommandTrace();
+
+    // Round trips by step name
+    private final Map<String, StepStats> steps = new ConcurrentHashMap<>();
+
+    // Lookups of every running step execution, folded into the step statistics when it finishes
+    private final Map<Step, Map<String, Integer>> runningLookups = new ConcurrentHashMap<>();
+
+    // Start time of the command running on each thread
+    private final ThreadLocal<Long> commandStartNanos = new ThreadLocal<>();
+
+    private CommandTrace() {
+        Step.addListener(new Step.Listener() {
+            @Override
+            public void stepFinished(Step step) {
+                Map<String, Integer> lookups = runningLookups.remove(step);
+                if (lookups != null) {
+                    StepStats stats = steps.computeIfAbsent(step.name(), StepStats::new);
+                    lookups.forEach((lookup, count) -> stats.maxLookups.merge(lookup, count, Math::max));
+                }
+            }
+        });
+    }
+
+    /**
+     * Decorates a browser session with command tracing when enabled by the nazeel.commandTrace setting, with the
+     * flight recorder command events while a recording runs unless nazeel.jfr=false, and with the page capture of
+     * the locator check when enabled by the nazeel.locators.capture setting.
+     *
+     * @param driver The session to trace.
+     * @return The traced session, or the session itself when all are off.
+     */
+    public static WebDriver decorate(WebDriver driver) {
+        List<WebDriverListener> listeners = new ArrayList<>();
+        if (Config.getBoolean("nazeel.commandTrace", false)) {
+            listeners.add(listener);
+        }
+        if (Config.getBoolean("nazeel.jfr", true) && FlightEvents.isRecording()) {
+            listeners.add(FlightEvents.commandListener());
+        }
+        if (Config.getBoolean("nazeel.locators.capture", false)) {
+            listeners.add(LocatorCheck.captureListener());
+        }
+        if (listeners.isEmpty()) {
+            return driver;
+        }
+        return new EventFiringDecorator<>(listeners.toArray(WebDriverListener[]::new)).decorate(driver);
+    }
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        commandStartNanos.set(System.nanoTime());
+    }
+
+    @Override
+    public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+        record(target, method, args);
+    }
+
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        record(target, method, args);
+    }
+
+    private void record(Object target, Method method, Object[] args) {
+        Long start = commandStartNanos.get();
+        commandStartNanos.remove();
+        if (start == null || LOCAL_CALLS.contains(method.getName())) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        String scope = target instanceof WebElement ? "element." : target instanceof WebDriver ? "driver." : "";
+        Step step = Step.current();
+        StepStats stats = steps.computeIfAbsent(step == null ? NO_STEP : step.name(), StepStats::new);
+        stats.commands.increment();
+        stats.nanos.add(nanos);
+        stats.byCommand.computeIfAbsent(scope + method.getName(), command -> new LongAdder()).increment();
+        if (step != null && method.getName().startsWith("findElement") && args != null && args.length > 0 && args[0] instanceof By by) {
+            runningLookups.computeIfAbsent(step, running -> new ConcurrentHashMap<>())
+                    .merge(scope + method.getName() + " " + by, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Prints the round trips per step and the repeated lookups, appends them to command-trace.csv and
+     * repeated-lookups.csv in the report folder, and starts over.
+     */
+    public static void report() {
+        if (listener.steps.isEmpty()) {
+            return;
+        }
+        int repeatThreshold = Config.getInt("nazeel.commandTrace.repeatThreshold", 2);
+        StringBuilder stepRows = new StringBuilder();
+        StringBuilder lookupRows = new StringBuilder();
+        listener.steps.values().stream()
+                .sorted(Comparator.comparingLong((StepStats stats) -> stats.nanos.sum()).reversed())
+                .forEach(stats -> {
+                    String commands = stats.byCommand.entrySet().stream()
+                            .sorted(Map.Entry.<String, LongAdder>comparingByValue(Comparator.comparingLong(LongAdder::sum)).reversed())
+                            .map(command -> command.getKey() + "=" + command.getValue().sum())
+                            .collect(Collectors.joining(" "));
+                    stepRows.append(csv(stats.step)).append(',').append(stats.commands.sum()).append(',')
+                            .append(stats.nanos.sum() / 1_000_000).append(',').append(csv(commands)).append(System.lineSeparator());
+                    stats.maxLookups.forEach((lookup, count) -> {
+                        if (count >= repeatThreshold) {
+                            lookupRows.append(csv(stats.step)).append(',').append(csv(lookup)).append(',')
+                                    .append(count).append(System.lineSeparator());
+                        }
+                    });
+                });
+        listener.steps.clear();
+
+        if (!stepRows.isEmpty()) {
+            Reports.log("WebDriver round trips (step,commands,totalMs,byCommand)" + System.lineSeparator() + stepRows);
+            Reports.append("command-trace.csv", "step,commands,totalMs,byCommand", stepRows);
+        }
+        if (!lookupRows.isEmpty()) {
+            Reports.log("Repeated lookups within one step execution (step,lookup,count)" + System.lineSeparator() + lookupRows);
+            Reports.append("repeated-lookups.csv", "step,lookup,count", lookupRows);
+        }
+    }
+
+    private static String csv(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Round trips of one step.
+     */
+    private static final class StepStats {
+        private final String step;
+        private final LongAdder commands = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final Map<String, LongAdder> byCommand = new ConcurrentHashMap<>();
+        // Most lookups of each locator within a single execution of the step
+        private final Map<String, Integer> maxLookups = new ConcurrentHashMap<>();
+
+        private StepStats(String step) {
+            this.step = step;
+        }
+    }
+}
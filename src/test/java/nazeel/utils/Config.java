@@ -0,0 +1,101 @@
+package nazeel.utils;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Central access to the harness settings.
+ * A value is looked up as a JVM system property first (e.g. -Dnazeel.resourceFilter=block),
+ * then as a parameter of the running TestNG suite/test, and finally falls back to the given default.
+ */
+public final class Config {
+    // Parameters declared in the TestNG suite file for the current test
+    private static final Map<String, String> suiteParameters = new ConcurrentHashMap<>();
+
+    private Config() {
+    }
+
+    /**
+     * Registers the parameters of the running TestNG suite/test so they can be used as settings.
+     *
+     * @param parameters The suite/test parameters.
+     */
+    public static void load(Map<String, String> parameters) {
+        suiteParameters.clear();
+        suiteParameters.putAll(parameters);
+    }
+
+    /**
+     * Returns the value of a setting.
+     *
+     * @param key          The setting name.
+     * @param defaultValue The value used when the setting is not defined.
+     * @return The configured value, or the default value.
+     */
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = suiteParameters.get(key);
+        }
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Returns the value of an integer setting.
+     *
+     * @param key          The setting name.
+     * @param defaultValue The value used when the setting is not defined.
+     * @return The configured value, or the default value.
+     */
+    public static int getInt(String key, int defaultValue) {
+        return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Returns the value of a decimal setting.
+     *
+     * @param key          The setting name.
+     * @param defaultValue The value used when the setting is not defined.
+     * @return The configured value, or the default value.
+     */
+    public static double getDouble(String key, double defaultValue) {
+        return Double.parseDouble(get(key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Returns the value of a boolean setting.
+     *
+     * @param key          The setting name.
+     * @param defaultValue The value used when the setting is not defined.
+     * @return The configured value, or the default value.
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Returns the value of a comma-separated list setting.
+     *
+     * @param key          The setting name.
+     * @param defaultValue The comma-separated value used when the setting is not defined.
+     * @return The configured entries, trimmed and without blanks.
+     */
+    public static List<String> getList(String key, String defaultValue) {
+        return Arrays.stream(get(key, defaultValue).split(","))
+                .map(String::trim)
+                .filter(entry -> !entry.isEmpty())
+                .toList();
+    }
+
+    /**
+     * Returns the folder where the harness writes its reports.
+     *
+     * @return The report folder, next to the TestNG reports by default.
+     */
+    public static Path reportDir() {
+        return Path.of(get("nazeel.reportDir", "test-output/perf"));
+    }
+}
@@ -0,0 +1,164 @@
+package nazeel.utils;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.Sleeper;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Push notification of page changes, letting explicit waits wake up the moment the DOM changes
+ * instead of sleeping through WebDriverWait's fixed 500 ms polling interval.
+ * <p>
+ * A MutationObserver, plus transitionend/animationend listeners for CSS-driven visibility changes, is installed
+ * in every document and reports through a CDP binding (Runtime.addBinding). A wait re-evaluates its condition
+ * on each report, at most once every nazeel.waits.minRecheckMillis (default 75) so a page changing continuously
+ * does not turn the wait into a busy loop, and polls only as a fallback, every nazeel.waits.fallbackPollMillis
+ * (default 2000).
+ * The binding lives in the CDP session of the window the signal was installed on, so other windows and tabs,
+ * as switched to through Hooks.Browser, get no signal and their waits poll normally.
+ * Disabled with nazeel.waits.push=false.
+ */
+public final class DomSignal {
+    private static final String BINDING = "__nazeelDomChanged";
+
+    // Observer script reporting at most one change per task through the binding
+    private static final String OBSERVER_SCRIPT = """
+            (function () {
+                if (window.__nazeelDomObserver || typeof __nazeelDomChanged !== 'function') return;
+                var pending = false;
+                function notify() {
+                    if (pending) return;
+                    pending = true;
+                    setTimeout(function () {
+                        pending = false;
+                        __nazeelDomChanged('');
+                    }, 0);
+                }
+                var observer = window.__nazeelDomObserver = new MutationObserver(notify);
+                function start() {
+                    observer.observe(document.documentElement, {subtree: true, childList: true, attributes: true, characterData: true});
+                    notify();
+                }
+                if (document.documentElement) start();
+                else document.addEventListener('readystatechange', start, {once: true});
+                ['transitionend', 'animationend', 'load'].forEach(function (type) {
+                    window.addEventListener(type, notify, true);
+                });
+            })();
+            """;
+
+    private static final Map<WebDriver, DomSignal> signals = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Object monitor = new Object();
+    private final String windowHandle;
+    private volatile String focusedHandle;
+    private long version;
+
+    private DomSignal(String windowHandle) {
+        this.windowHandle = windowHandle;
+        this.focusedHandle = windowHandle;
+    }
+
+    /**
+     * Installs the change notifications on a freshly opened browser session, unless disabled.
+     *
+     * @param driver The session to observe.
+     */
+    public static void install(WebDriver driver) {
+        if (!Config.getBoolean("nazeel.waits.push", true)) {
+            return;
+        }
+        DomSignal signal = new DomSignal(driver.getWindowHandle());
+        Cdp.on(driver, "Runtime.bindingCalled", event -> {
+            if (BINDING.equals(event.get("name"))) {
+                signal.signal();
+            }
+        });
+        Cdp.send(driver, "Runtime.enable", Map.of());
+        Cdp.send(driver, "Runtime.addBinding", Map.of("name", BINDING));
+        Cdp.send(driver, "Page.enable", Map.of());
+        Cdp.send(driver, "Page.addScriptToEvaluateOnNewDocument", Map.of("source", OBSERVER_SCRIPT));
+        Cdp.send(driver, "Runtime.evaluate", Map.of("expression", OBSERVER_SCRIPT));
+        signals.put(Cdp.unwrap(driver), signal);
+    }
+
+    /**
+     * Returns the change notifications of a session's focused window.
+     *
+     * @param driver The session.
+     * @return The signal, or null when none was installed or another window than the observed one has the focus.
+     */
+    public static DomSignal of(WebDriver driver) {
+        DomSignal signal = signals.get(Cdp.unwrap(driver));
+        return signal != null && signal.windowHandle.equals(signal.focusedHandle) ? signal : null;
+    }
+
+    /**
+     * Tells the signal of a session which window the session switched to.
+     *
+     * @param driver       The session.
+     * @param windowHandle The handle of the window now focused.
+     */
+    public static void focused(WebDriver driver, String windowHandle) {
+        DomSignal signal = signals.get(Cdp.unwrap(driver));
+        if (signal != null) {
+            signal.focusedHandle = windowHandle;
+        }
+    }
+
+    /**
+     * Returns the fallback polling interval used when no change is reported.
+     *
+     * @return The fallback polling interval.
+     */
+    public static Duration fallbackPolling() {
+        return Duration.ofMillis(Config.getInt("nazeel.waits.fallbackPollMillis", 2000));
+    }
+
+    /**
+     * Creates a sleeper for one wait, returning as soon as the page reports a change, but not sooner than the
+     * minimum re-check interval after its previous return, and never sleeping past the end of the wait.
+     *
+     * @param timeout The timeout of the wait.
+     * @return The sleeper.
+     */
+    public Sleeper sleeper(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long minRecheckNanos = Duration.ofMillis(Config.getInt("nazeel.waits.minRecheckMillis", 75)).toNanos();
+        long[] seenVersion = {currentVersion()};
+        long[] lastWakeNanos = {System.nanoTime()};
+        return duration -> {
+            long wakeUp = Math.min(System.nanoTime() + duration.toNanos(), deadline + 1_000_000);
+            long earliest = Math.min(lastWakeNanos[0] + minRecheckNanos, wakeUp);
+            synchronized (monitor) {
+                while (true) {
+                    // Without a change sleep until the poll is due; after one, only until the re-check interval ends
+                    long until = version == seenVersion[0] ? wakeUp : earliest;
+                    long remainingMillis = (until - System.nanoTime()) / 1_000_000;
+                    if (remainingMillis <= 0) {
+                        break;
+                    }
+                    monitor.wait(remainingMillis);
+                }
+                seenVersion[0] = version;
+            }
+            lastWakeNanos[0] = System.nanoTime();
+        };
+    }
+
+    private long currentVersion() {
+        synchronized (monitor) {
+            return version;
+        }
+    }
+
+    private void signal() {
+        synchronized (monitor) {
+            version++;
+            monitor.notifyAll();
+        }
+    }
+}
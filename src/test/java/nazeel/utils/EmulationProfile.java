@@ -0,0 +1,172 @@
+package nazeel.utils;
+
+import org.openqa.selenium.WebDriver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Named network and CPU conditions the unchanged test flow can run under, e.g. a front-desk tablet on hotel Wi-Fi.
+ * <p>
+ * The profile is selected with the nazeel.emulation setting, typically per &lt;test&gt; of
+ * src/test/resources/testng-emulation.xml, and is read from emulation-profiles.properties on the test classpath as
+ * "profile.latencyMs", "profile.downloadKbps", "profile.uploadKbps" (0 for unlimited) and "profile.cpuSlowdown".
+ * It is applied through CDP Network.emulateNetworkConditions and Emulation.setCPUThrottlingRate.
+ * <p>
+ * Under a profile, step timings and page metrics are recorded as "name@profile", so each profile keeps its own
+ * baseline, and page budgets only apply when declared for "page@profile". At the end of the suite
+ * {@link #report()} compares the median step durations of the profiles in emulation-comparison.csv, one row per
+ * step and profile: epochMillis,step,profile,medianMs,reference,slowdown. Forked JVMs append their own rows.
+ */
+public final class EmulationProfile {
+    // Profiles declared in emulation-profiles.properties
+    private static final Properties profiles = loadProfiles();
+
+    private static final String HEADER = "epochMillis,step,profile,medianMs,reference,slowdown";
+
+    // Step timings of the emulated tests of this run
+    private static final Queue<TimingHistory.Entry> timings = new ConcurrentLinkedQueue<>();
+
+    private EmulationProfile() {
+    }
+
+    /**
+     * Returns the active emulation profile.
+     *
+     * @return The profile name, or null when the browser runs unthrottled.
+     */
+    public static String active() {
+        return Config.get("nazeel.emulation", null);
+    }
+
+    /**
+     * Tags a test, step or page name with the active emulation profile.
+     *
+     * @param name The name.
+     * @return "name@profile", or the name itself when no profile is active.
+     */
+    public static String label(String name) {
+        String profile = active();
+        return profile == null ? name : name + "@" + profile;
+    }
+
+    /**
+     * Throttles a freshly opened browser session according to the active profile.
+     *
+     * @param driver The session to throttle.
+     */
+    public static void apply(WebDriver driver) {
+        String profile = active();
+        if (profile == null) {
+            return;
+        }
+        if (profiles.stringPropertyNames().stream().noneMatch(key -> key.startsWith(profile + "."))) {
+            throw new IllegalArgumentException("Unknown emulation profile: " + profile);
+        }
+        Cdp.send(driver, "Network.enable", Map.of());
+        Cdp.send(driver, "Network.emulateNetworkConditions", Map.of(
+                "offline", false,
+                "latency", value(profile, "latencyMs"),
+                "downloadThroughput", throughput(profile, "downloadKbps"),
+                "uploadThroughput", throughput(profile, "uploadKbps")));
+        Cdp.send(driver, "Emulation.setCPUThrottlingRate", Map.of("rate", Math.max(1, value(profile, "cpuSlowdown"))));
+    }
+
+    /**
+     * Keeps the step timings of a passing emulated test for the comparison report.
+     *
+     * @param entries The timings of one test, whose test names are labelled with the profile.
+     */
+    public static void collect(List<TimingHistory.Entry> entries) {
+        if (active() != null) {
+            entries.stream().filter(entry -> entry.status().equals("PASS")).forEach(timings::add);
+        }
+    }
+
+    /**
+     * Appends the median duration of every step under each profile of this run, and its slowdown against the first
+     * profile, to emulation-comparison.csv in the report folder.
+     */
+    public static void report() {
+        Map<String, Map<String, List<Long>>> durations = new LinkedHashMap<>();
+        Set<String> runProfiles = new LinkedHashSet<>();
+        TimingHistory.Entry entry;
+        while ((entry = timings.poll()) != null) {
+            int at = entry.test().lastIndexOf('@');
+            String profile = entry.test().substring(at + 1);
+            runProfiles.add(profile);
+            durations.computeIfAbsent(TimingHistory.key(entry.test().substring(0, at), entry.step()), key -> new LinkedHashMap<>())
+                    .computeIfAbsent(profile, key -> new ArrayList<>())
+                    .add(entry.durationMs());
+        }
+        if (runProfiles.isEmpty()) {
+            return;
+        }
+        String reference = runProfiles.iterator().next();
+        long now = System.currentTimeMillis();
+        StringBuilder rows = new StringBuilder();
+        durations.forEach((step, byProfile) -> {
+            double referenceMs = median(byProfile.get(reference));
+            byProfile.forEach((profile, stepDurations) -> {
+                double medianMs = median(stepDurations);
+                rows.append(now).append(",\"").append(step.replace("\"", "\"\"")).append("\",").append(profile)
+                        .append(',').append(format(medianMs, "%.0f")).append(',').append(reference).append(',')
+                        .append(referenceMs > 0 ? format(medianMs / referenceMs, "%.2f") : "")
+                        .append(System.lineSeparator());
+            });
+        });
+        Reports.log("Step durations per emulation profile" + System.lineSeparator() + HEADER + System.lineSeparator() + rows);
+        Reports.append("emulation-comparison.csv", HEADER, rows);
+    }
+
+    private static double median(List<Long> values) {
+        if (values == null || values.isEmpty()) {
+            return Double.NaN;
+        }
+        long[] sorted = values.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return TimingHistory.percentile(sorted, 50);
+    }
+
+    private static String format(double value, String pattern) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, pattern, value);
+    }
+
+    private static double value(String profile, String key) {
+        return Double.parseDouble(Config.get("nazeel.emulation." + profile + "." + key,
+                profiles.getProperty(profile + "." + key, "0")));
+    }
+
+    // CDP throughput is in bytes per second, -1 disabling throttling
+    private static double throughput(String profile, String key) {
+        double kbps = value(profile, key);
+        return kbps <= 0 ? -1 : kbps * 1000 / 8;
+    }
+
+    /**
+     * Loads the profiles from emulation-profiles.properties on the test classpath, if present.
+     */
+    private static Properties loadProfiles() {
+        Properties properties = new Properties();
+        try (InputStream input = EmulationProfile.class.getClassLoader().getResourceAsStream("emulation-profiles.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return properties;
+    }
+}
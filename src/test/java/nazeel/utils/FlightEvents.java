@@ -0,0 +1,270 @@
+package nazeel.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import org.openqa.selenium.By;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.WebDriverListener;
+import org.openqa.selenium.support.ui.Sleeper;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Java Flight Recorder events for the test steps, explicit waits and WebDriver commands, so a recording shows
+ * where a run spends its time on the same timeline as GC and thread activity in JDK Mission Control.
+ * <p>
+ * Start a recording with e.g. {@code mvn test -DargLine="-XX:StartFlightRecording=filename=test-output/run.jfr"}
+ * and look for the "Nazeel" category. Without a recording the events are never committed, so emitting them costs
+ * close to nothing. WebDriver command events need a decorated driver, so sessions are only decorated for them
+ * while a recording runs when the session opens; nazeel.jfr=false turns every event off.
+ */
+public final class FlightEvents {
+
+    /**
+     * A test step, from its start to its end.
+     */
+    @Name("nazeel.Step")
+    @Label("Test Step")
+    @Category({"Nazeel", "Test"})
+    @StackTrace(false)
+    public static final class StepEvent extends Event {
+        @Label("Step")
+        String step;
+
+        @Label("Parent Step")
+        String parent;
+    }
+
+    /**
+     * An explicit wait, from its start until its condition was met, timed out or failed.
+     */
+    @Name("nazeel.Wait")
+    @Label("Explicit Wait")
+    @Category({"Nazeel", "Test"})
+    @StackTrace(false)
+    public static final class WaitEvent extends Event {
+        @Label("Condition")
+        @Description("The condition, or the code location of a lambda condition")
+        String condition;
+
+        @Label("Timeout")
+        @Timespan(Timespan.SECONDS)
+        long timeout;
+
+        @Label("Outcome")
+        @Description("met, timeout, or the exception that ended the wait")
+        String outcome;
+
+        @Label("Polls")
+        int polls;
+
+        @Label("Step")
+        String step;
+    }
+
+    /**
+     * One WebDriver command, i.e. one round trip to the browser.
+     */
+    @Name("nazeel.WebDriverCommand")
+    @Label("WebDriver Command")
+    @Category({"Nazeel", "WebDriver"})
+    @StackTrace(false)
+    public static final class CommandEvent extends Event {
+        @Label("Command")
+        String command;
+
+        @Label("Locator")
+        String locator;
+
+        @Label("Failed")
+        boolean failed;
+
+        @Label("Step")
+        String step;
+    }
+
+    /**
+     * Explicit wait emitting a {@link WaitEvent}; the waits of Hooks.Browser.explicitWait build on it.
+     */
+    public static class RecordedWait extends WebDriverWait {
+        private final Duration timeout;
+
+        /**
+         * Creates a wait.
+         *
+         * @param driver   The driver to wait on.
+         * @param timeout  The timeout of the wait.
+         * @param interval The polling interval.
+         * @param sleeper  The sleeper between polls.
+         */
+        public RecordedWait(WebDriver driver, Duration timeout, Duration interval, Sleeper sleeper) {
+            super(driver, timeout, interval, Clock.systemDefaultZone(), sleeper);
+            this.timeout = timeout;
+        }
+
+        @Override
+        public <V> V until(Function<? super WebDriver, V> isTrue) {
+            WaitEvent event = new WaitEvent();
+            if (!event.isEnabled()) {
+                return super.until(isTrue);
+            }
+            event.condition = describe(isTrue);
+            event.timeout = timeout.toSeconds();
+            event.step = currentStep();
+            int[] polls = {0};
+            event.begin();
+            try {
+                V value = super.until(driver -> {
+                    polls[0]++;
+                    return isTrue.apply(driver);
+                });
+                event.outcome = "met";
+                return value;
+            } catch (TimeoutException e) {
+                event.outcome = "timeout";
+                throw e;
+            } catch (RuntimeException e) {
+                event.outcome = e.getClass().getSimpleName();
+                throw e;
+            } finally {
+                event.polls = polls[0];
+                event.commit();
+            }
+        }
+    }
+
+    // Frames skipped when locating the code that started a wait
+    private static final Set<String> HARNESS_CLASSES = Set.of(FlightEvents.class.getName(), RecordedWait.class.getName(),
+            "nazeel.Hooks$Browser");
+
+    // Events of the running steps
+    private static final Map<Step, StepEvent> runningSteps = new ConcurrentHashMap<>();
+
+    // Event of the command running on each thread
+    private static final ThreadLocal<CommandEvent> runningCommand = new ThreadLocal<>();
+
+    private static boolean installed;
+
+    private FlightEvents() {
+    }
+
+    /**
+     * Starts emitting step events; sessions opened later only find them already registered.
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        Step.addListener(new Step.Listener() {
+            @Override
+            public void stepStarted(Step step) {
+                StepEvent event = new StepEvent();
+                if (event.isEnabled()) {
+                    event.step = step.name();
+                    event.parent = step.parent() == null ? null : step.parent().name();
+                    event.begin();
+                    runningSteps.put(step, event);
+                }
+            }
+
+            @Override
+            public void stepFinished(Step step) {
+                StepEvent event = runningSteps.remove(step);
+                if (event != null) {
+                    event.commit();
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks if a flight recording is running, e.g. started with -XX:StartFlightRecording.
+     *
+     * @return true if the flight recorder is available and records right now, false otherwise.
+     */
+    public static boolean isRecording() {
+        return FlightRecorder.isAvailable() && FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .anyMatch(recording -> recording.getState() == RecordingState.RUNNING);
+    }
+
+    /**
+     * Returns the listener emitting a {@link CommandEvent} for every WebDriver command of a decorated driver.
+     *
+     * @return The WebDriver listener.
+     */
+    public static WebDriverListener commandListener() {
+        return new WebDriverListener() {
+            @Override
+            public void beforeAnyCall(Object target, Method method, Object[] args) {
+                CommandEvent event = new CommandEvent();
+                if (event.isEnabled() && !CommandTrace.LOCAL_CALLS.contains(method.getName())) {
+                    event.command = (target instanceof WebElement ? "element." : target instanceof WebDriver ? "driver." : "")
+                            + method.getName();
+                    event.locator = args != null && args.length > 0 && args[0] instanceof By by ? by.toString() : null;
+                    event.step = currentStep();
+                    event.begin();
+                    runningCommand.set(event);
+                }
+            }
+
+            @Override
+            public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+                commit(false);
+            }
+
+            @Override
+            public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+                commit(true);
+            }
+
+            private void commit(boolean failed) {
+                CommandEvent event = runningCommand.get();
+                if (event != null) {
+                    runningCommand.remove();
+                    event.failed = failed;
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    private static String currentStep() {
+        Step step = Step.current();
+        return step == null ? null : step.name();
+    }
+
+    /**
+     * Describes a wait condition: its own description, or for lambdas the code location that started the wait.
+     */
+    private static String describe(Object condition) {
+        if (!condition.getClass().isSynthetic() && !condition.getClass().getName().contains("$$Lambda")) {
+            return condition.toString();
+        }
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> !HARNESS_CLASSES.contains(frame.getClassName())
+                        && !frame.getClassName().startsWith("org.openqa.")
+                        && !frame.getClassName().startsWith("java."))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                        + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse("lambda"));
+    }
+}
@@ -0,0 +1,180 @@
+package nazeel.utils;
+
+import nazeel.Hooks;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.Actions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fills several form fields at once instead of one sendKeys round trip per field.
+ * Fields are applied in the order they were added, and the resulting values are verified
+ * before the optional submit button is clicked.
+ */
+public class FormFiller {
+
+    // Script prologue exposing the locator resolver and the field/submit arguments
+    private static final String PROLOGUE = Locators.RESOLVER + """
+            var fields = arguments[0], submit = arguments[1], mismatches = [];
+            """;
+
+    // Script body that sets every field through the native value setter and fires the events Angular listens to
+    private static final String APPLY_BODY = """
+            fields.forEach(function (field) {
+                var element = nazeelFind(field[0], false);
+                if (!element) return;
+                var prototype = element instanceof HTMLTextAreaElement ? HTMLTextAreaElement.prototype
+                        : element instanceof HTMLSelectElement ? HTMLSelectElement.prototype : HTMLInputElement.prototype;
+                element.focus();
+                Object.getOwnPropertyDescriptor(prototype, 'value').set.call(element, field[1]);
+                element.dispatchEvent(new Event('input', {bubbles: true}));
+                element.dispatchEvent(new Event('change', {bubbles: true}));
+                element.blur();
+            });
+            """;
+
+    // Script body that reads every field back
+    private static final String VERIFY_BODY = """
+            fields.forEach(function (field) {
+                var element = nazeelFind(field[0], false);
+                if (!element) mismatches.push(field[0].join(': ') + ' not found');
+                else if (element.value !== field[1]) mismatches.push(field[0].join(': ') + " has '" + element.value + "'");
+            });
+            """;
+
+    // Script body that clicks submit only when no mismatch was found
+    private static final String SUBMIT_BODY = """
+            if (mismatches.length === 0 && submit) {
+                var button = nazeelFind(submit, false);
+                if (button) button.click();
+                else mismatches.push(submit.join(': ') + ' not found');
+            }
+            return mismatches;
+            """;
+
+    // Key chords (e.g. Keys.ENTER, in the Unicode private use area) at the end of a typed value
+    private static final Pattern TRAILING_KEYS = Pattern.compile("[\\uE000-\\uF8FF]*$");
+
+    // Script that resolves every field element in a single call for the Actions chain
+    private static final String RESOLVE_SCRIPT = PROLOGUE + """
+            return fields.map(function (field) { return nazeelFind(field[0], false); });
+            """;
+
+    // Fields to fill, kept in insertion order
+    private final Map<By, String> fields = new LinkedHashMap<>();
+
+    // Optional button clicked once all values are verified
+    private By submitButton;
+
+    /**
+     * Adds a field and the value to put into it.
+     *
+     * @param locator The locator of the input field.
+     * @param value   The value to enter; may end with {@link org.openqa.selenium.Keys} when typed with {@link #type()}.
+     * @return The current FormFiller instance for method chaining.
+     */
+    public FormFiller field(By locator, String value) {
+        fields.put(locator, value);
+        return this;
+    }
+
+    /**
+     * Sets the button to click after all values have been applied and verified.
+     *
+     * @param locator The locator of the submit button.
+     * @return The current FormFiller instance for method chaining.
+     */
+    public FormFiller submit(By locator) {
+        this.submitButton = locator;
+        return this;
+    }
+
+    /**
+     * Applies, verifies and submits all values in one script call.
+     * Suited for plain inputs bound to Angular forms.
+     *
+     * @throws IllegalStateException if a field is missing or does not hold the expected value.
+     */
+    public void fill() {
+        List<String> mismatches = execute(PROLOGUE + APPLY_BODY + VERIFY_BODY + SUBMIT_BODY, submitArgument());
+        failOnMismatches(mismatches);
+    }
+
+    /**
+     * Types the text of all values through one Actions chain and verifies it in one script call, then sends the
+     * trailing keys of the values (e.g. ENTER committing an autocomplete suggestion) through a second chain and
+     * clicks submit. The typed text is verified before the keys commit it, as a committed selection may replace it.
+     * Suited for widgets such as autocompletes that react to real key presses.
+     *
+     * @throws IllegalStateException if a field is missing or does not hold the expected text before its keys are sent.
+     */
+    @SuppressWarnings("unchecked")
+    public void type() {
+        List<WebElement> elements = (List<WebElement>) ((JavascriptExecutor) Hooks.Browser.getDriver())
+                .executeScript(RESOLVE_SCRIPT, scriptFields(), null);
+
+        Actions text = new Actions(Hooks.Browser.getDriver());
+        Actions keys = new Actions(Hooks.Browser.getDriver());
+        boolean hasKeys = false;
+        int index = 0;
+        for (Map.Entry<By, String> field : fields.entrySet()) {
+            WebElement element = elements.get(index++);
+            if (element == null) {
+                throw new IllegalStateException("Form field not found: " + field.getKey());
+            }
+            Matcher trailingKeys = TRAILING_KEYS.matcher(field.getValue());
+            trailingKeys.find();
+            text.sendKeys(element, field.getValue().substring(0, trailingKeys.start()));
+            if (!trailingKeys.group().isEmpty()) {
+                keys.sendKeys(element, trailingKeys.group());
+                hasKeys = true;
+            }
+        }
+        text.perform();
+
+        failOnMismatches(execute(PROLOGUE + VERIFY_BODY, null));
+        if (hasKeys) {
+            keys.perform();
+        }
+        if (submitButton != null) {
+            failOnMismatches(execute(PROLOGUE + SUBMIT_BODY, submitArgument()));
+        }
+    }
+
+    /**
+     * Runs a fill/verify script with the field and submit arguments and returns the reported mismatches.
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> execute(String script, List<String> submit) {
+        return (List<String>) ((JavascriptExecutor) Hooks.Browser.getDriver())
+                .executeScript(script, scriptFields(), submit);
+    }
+
+    /**
+     * Builds the [[strategy, value], expectedValue] pairs passed to the scripts.
+     * Key chords such as ENTER are stripped from the expected value, as they never end up in the field.
+     */
+    private List<List<Object>> scriptFields() {
+        List<List<Object>> scriptFields = new ArrayList<>();
+        fields.forEach((locator, value) ->
+                scriptFields.add(List.of(Locators.toScriptArgument(locator), value.replaceAll("[\\uE000-\\uF8FF]", ""))));
+        return scriptFields;
+    }
+
+    private List<String> submitArgument() {
+        return submitButton == null ? null : Locators.toScriptArgument(submitButton);
+    }
+
+    private void failOnMismatches(List<String> mismatches) {
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("Form values were not applied: " + String.join(", ", mismatches));
+        }
+    }
+}
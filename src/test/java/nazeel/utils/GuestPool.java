@@ -0,0 +1,192 @@
+package nazeel.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pool of pre-provisioned guests leased exclusively to one test at a time, so parallel tests never book
+ * overlapping stays for the same guest.
+ * <p>
+ * Inside a JVM the free guests live in a lock-free queue; across forked JVMs a guest is additionally
+ * held through an OS file lock in the nazeel.guests.lockDir folder, which the OS releases if a fork dies.
+ * Leases of a test are returned to the pool by {@link #releaseAll()} on teardown.
+ */
+public final class GuestPool {
+
+    /**
+     * Creates the guests of the pool in bulk.
+     */
+    @FunctionalInterface
+    public interface Provisioner {
+        /**
+         * Creates or looks up the guests available to the suite.
+         *
+         * @return The ID numbers of the provisioned guests.
+         */
+        List<String> provision();
+    }
+
+    /**
+     * Exclusive lease of one guest; closing it returns the guest to the pool.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final String guestId;
+        private final FileChannel channel;
+        private final FileLock lock;
+        // Leases of the test holding this one, whichever thread closes it
+        private final List<Lease> owner;
+        private boolean released;
+
+        private Lease(String guestId, FileChannel channel, FileLock lock, List<Lease> owner) {
+            this.guestId = guestId;
+            this.channel = channel;
+            this.lock = lock;
+            this.owner = owner;
+        }
+
+        /**
+         * Returns the ID number of the leased guest.
+         *
+         * @return The guest ID number.
+         */
+        public String guestId() {
+            return guestId;
+        }
+
+        /**
+         * Returns the guest to the pool.
+         */
+        @Override
+        public synchronized void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            try {
+                lock.release();
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                owner.remove(this);
+                available.offer(guestId);
+            }
+        }
+    }
+
+    // Guests not leased by this JVM
+    private static final Queue<String> available = new ConcurrentLinkedQueue<>();
+
+    // Leases held by the test running on each thread
+    private static final ThreadLocal<List<Lease>> leases =
+            ThreadLocal.withInitial(() -> Collections.synchronizedList(new ArrayList<>()));
+
+    private static volatile boolean provisioned;
+
+    private GuestPool() {
+    }
+
+    /**
+     * Provisioner standing in for the backend: the guests listed in the nazeel.guests setting
+     * (comma-separated ID numbers, default "123456789").
+     *
+     * @return The local provisioner.
+     */
+    public static Provisioner local() {
+        return () -> Config.getList("nazeel.guests", "123456789");
+    }
+
+    /**
+     * Fills the pool with the guests created by the provisioner; later calls are ignored.
+     *
+     * @param provisioner The provisioner creating the guests in bulk.
+     */
+    public static synchronized void provision(Provisioner provisioner) {
+        if (provisioned) {
+            return;
+        }
+        Set<String> guestIds = new LinkedHashSet<>(provisioner.provision());
+        if (guestIds.isEmpty()) {
+            throw new IllegalStateException("The guest provisioner returned no guests.");
+        }
+        available.addAll(guestIds);
+        provisioned = true;
+    }
+
+    /**
+     * Leases a guest, waiting up to nazeel.guests.leaseTimeoutSeconds (default 300) for one to become free.
+     *
+     * @return The lease of a guest no other test is using.
+     * @throws IllegalStateException if no guest became free in time.
+     */
+    public static Lease lease() {
+        provision(local());
+        long deadline = System.nanoTime() + Duration.ofSeconds(Config.getInt("nazeel.guests.leaseTimeoutSeconds", 300)).toNanos();
+        long backoffNanos = Duration.ofMillis(20).toNanos();
+        while (System.nanoTime() < deadline) {
+            int candidates = available.size();
+            for (int i = 0; i < candidates; i++) {
+                String guestId = available.poll();
+                if (guestId == null) {
+                    break;
+                }
+                Lease lease = tryLock(guestId);
+                if (lease != null) {
+                    lease.owner.add(lease);
+                    return lease;
+                }
+                // Held by another JVM: keep it in rotation
+                available.offer(guestId);
+            }
+            LockSupport.parkNanos(backoffNanos);
+            backoffNanos = Math.min(backoffNanos * 2, Duration.ofSeconds(1).toNanos());
+        }
+        throw new IllegalStateException("No guest could be leased from the pool within the timeout.");
+    }
+
+    /**
+     * Returns every guest leased by the current thread to the pool.
+     */
+    public static void releaseAll() {
+        for (Lease lease : List.copyOf(leases.get())) {
+            lease.close();
+        }
+    }
+
+    /**
+     * Takes the cross-JVM file lock of a guest.
+     *
+     * @return The lease, or null if another JVM holds the guest.
+     */
+    private static Lease tryLock(String guestId) {
+        try {
+            Path lockDir = Path.of(Config.get("nazeel.guests.lockDir",
+                    Path.of(System.getProperty("java.io.tmpdir"), "nazeel-guest-locks").toString()));
+            Files.createDirectories(lockDir);
+            FileChannel channel = FileChannel.open(lockDir.resolve("guest-" + guestId.replaceAll("\\W", "_") + ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            return new Lease(guestId, channel, lock, leases.get());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package nazeel.utils;
+
+import nazeel.Hooks;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Driver for Kendo {@code kendo-dropdownlist} widgets that lists and selects options in one script call
+ * instead of opening the popup, waiting for its options and clicking one of them.
+ * <p>
+ * When the page exposes the Angular debugging API (development builds), the options are read from the component
+ * data and the selection is moved with Home/ArrowDown key events on the closed widget, so the popup never opens.
+ * Otherwise the popup is opened inside the script and the option is clicked as soon as it is rendered, without
+ * waiting for the animation. The options are always taken from the list the widget owns (its aria-owns or
+ * aria-controls list box), never from whichever Kendo list happens to be open. Either way the value shown by the
+ * widget is read back and verified before the call returns.
+ */
+public class KendoDropDown {
+
+    // Asynchronous script listing or selecting the options of one dropdown; arguments: locator, mode, text, index
+    private static final String SCRIPT = Locators.RESOLVER + """
+            var locator = arguments[0], mode = arguments[1], wantedText = arguments[2], wantedIndex = arguments[3],
+                    done = arguments[arguments.length - 1];
+
+            function shown(host) {
+                var label = host.querySelector('.k-input-value-text, .k-input');
+                return label ? label.textContent.trim() : '';
+            }
+            function later(check, callback) {
+                var tries = 0;
+                (function poll() {
+                    var value = check();
+                    if (value || ++tries > 100) callback(value);
+                    else setTimeout(poll, 20);
+                })();
+            }
+            function press(target, keyCode, key) {
+                var event = new KeyboardEvent('keydown', {key: key, code: key, bubbles: true, cancelable: true});
+                Object.defineProperty(event, 'keyCode', {get: function () { return keyCode; }});
+                Object.defineProperty(event, 'which', {get: function () { return keyCode; }});
+                target.dispatchEvent(event);
+            }
+            function text(item, field) {
+                var value = item;
+                if (field && item !== null && typeof item === 'object') {
+                    field.split('.').forEach(function (key) { value = value == null ? value : value[key]; });
+                }
+                return String(value == null ? '' : value).trim();
+            }
+            function pick(options) {
+                if (options.length === 0) return -1;
+                if (wantedText !== null) return options.indexOf(wantedText);
+                if (wantedIndex < 0) return Math.floor(Math.random() * options.length);
+                return wantedIndex < options.length ? wantedIndex : -1;
+            }
+            function listBox(host) {
+                var owner = host.matches('[aria-owns],[aria-controls]') ? host : host.querySelector('[aria-owns],[aria-controls]');
+                var id = owner && (owner.getAttribute('aria-controls') || owner.getAttribute('aria-owns'));
+                var list = id && document.getElementById(id);
+                return list && list.querySelector('li[role="option"]') ? list : null;
+            }
+
+            var element = nazeelFind(locator, false);
+            if (!element) return done({error: 'not found'});
+            var host = element.closest('kendo-dropdownlist') || element;
+            var missing = 'no option ' + (wantedText !== null ? "'" + wantedText + "'" : wantedIndex);
+            function finish(options, expected) {
+                later(function () { return shown(host) === expected; }, function () {
+                    done({options: options, expected: expected, selected: shown(host)});
+                });
+            }
+
+            var expanded = host.getAttribute('aria-expanded') === 'true' || !!host.querySelector('[aria-expanded="true"]');
+            var component = !expanded && window.ng && ng.getComponent ? ng.getComponent(host) : null;
+            if (component && Array.isArray(component.data)) {
+                // Closed widget: Home selects the first item, each ArrowDown the next one
+                var data = component.data.map(function (item) { return text(item, component.textField); });
+                if (mode === 'options') return done({options: data});
+                var target = pick(data);
+                if (target < 0) return done({options: data, error: missing});
+                var focused = host.hasAttribute('tabindex') ? host : element;
+                focused.focus();
+                press(focused, 36, 'Home');
+                for (var step = 0; step <= data.length && shown(host) !== data[target]; step++) {
+                    press(focused, 40, 'ArrowDown');
+                }
+                return finish(data, data[target]);
+            }
+
+            if (!expanded) element.click();
+            later(function () { return listBox(host); }, function (list) {
+                if (!list) return done({error: 'options list did not open'});
+                var items = Array.prototype.slice.call(list.querySelectorAll('li[role="option"]'));
+                var options = items.map(function (item) { return item.textContent.trim(); });
+                if (mode === 'options') {
+                    element.click();
+                    return done({options: options});
+                }
+                var target = pick(options);
+                if (target < 0) {
+                    element.click();
+                    return done({options: options, error: missing});
+                }
+                items[target].click();
+                finish(options, options[target]);
+            });
+            """;
+
+    private final By locator;
+
+    /**
+     * Creates a driver for a dropdown.
+     *
+     * @param locator The locator of the {@code kendo-dropdownlist} element or of any element inside it.
+     */
+    public KendoDropDown(By locator) {
+        this.locator = locator;
+    }
+
+    /**
+     * Reads the options of the dropdown.
+     *
+     * @return The option texts, in list order.
+     * @throws IllegalStateException if the dropdown is missing or its options cannot be read.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> options() {
+        return (List<String>) run("options", null, -1).get("options");
+    }
+
+    /**
+     * Selects the option with the given text.
+     *
+     * @param text The option text.
+     * @return The text shown by the dropdown afterwards.
+     * @throws IllegalStateException if the option is missing or the dropdown does not show it afterwards.
+     */
+    public String select(String text) {
+        return verify(run("select", text, -1));
+    }
+
+    /**
+     * Selects the option at the given position.
+     *
+     * @param index The option position, starting at 0.
+     * @return The text shown by the dropdown afterwards.
+     * @throws IllegalArgumentException if the index is negative.
+     * @throws IllegalStateException    if the option is missing or the dropdown does not show it afterwards.
+     */
+    public String select(int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Option index must not be negative: " + index);
+        }
+        return verify(run("select", null, index));
+    }
+
+    /**
+     * Selects a random option, chosen inside the page so listing and selecting take a single call.
+     *
+     * @return The text shown by the dropdown afterwards.
+     * @throws IllegalStateException if the dropdown has no options or does not show the chosen one afterwards.
+     */
+    public String selectRandom() {
+        return verify(run("select", null, -1));
+    }
+
+    /**
+     * Runs the dropdown script and fails on the error it reports.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> run(String mode, String text, int index) {
+        Map<String, Object> result = (Map<String, Object>) ((JavascriptExecutor) Hooks.Browser.getDriver())
+                .executeAsyncScript(SCRIPT, Locators.toScriptArgument(locator), mode, text, index);
+        if (result.get("error") != null) {
+            throw new IllegalStateException("Kendo dropdown " + locator + ": " + result.get("error")
+                    + (result.get("options") != null ? " among " + result.get("options") : ""));
+        }
+        return result;
+    }
+
+    private String verify(Map<String, Object> result) {
+        String expected = (String) result.get("expected");
+        String selected = (String) result.get("selected");
+        if (!expected.equals(selected)) {
+            throw new IllegalStateException("Kendo dropdown " + locator + " shows '" + selected + "' instead of '"
+                    + expected + "'");
+        }
+        return selected;
+    }
+}
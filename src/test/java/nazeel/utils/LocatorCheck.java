@@ -0,0 +1,342 @@
+package nazeel.utils;
+
+import nazeel.Hooks;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Checks the {@link By} locators declared by the page objects before any test flow starts, so a broken or drifted
+ * locator fails the run in milliseconds instead of after an explicit wait deep into a test.
+ * <p>
+ * {@link #validate(WebDriver)} runs one script call per page object (nazeel.locators.pages): every selector is
+ * parsed by the browser, which catches malformed CSS and XPath, and is resolved against the captured page it was
+ * last seen on. Pages are captured with nazeel.locators.capture=true during a passing run: whenever a declared
+ * locator is found for the first time, or a step starts or finishes while declared locators are on the page, the
+ * DOM is saved gzip compressed to nazeel.locators.snapshots (default page-snapshots in the report folder), with
+ * index.properties recording the snapshot of every locator. Locators without a snapshot, and all locators of a
+ * capture run, are only parsed. Snapshots are staging pages that may show guest data: scrub them before pointing
+ * nazeel.locators.snapshots at a committed folder such as src/test/resources/page-snapshots. A capture run only
+ * ever deletes the snapshots it wrote itself.
+ * nazeel.locators.validate is fail (default), warn or off.
+ */
+public final class LocatorCheck implements WebDriverListener {
+    private static final String DEFAULT_PAGES = "nazeel.pages.P01_Login,nazeel.pages.P02_Home,nazeel.pages.P03_Reservation";
+
+    // Parses every locator against the live page, then resolves it in its captured page
+    private static final String VALIDATE_SCRIPT = Locators.RESOLVER + """
+            var locators = arguments[0], docs = arguments[1].map(function (html) {
+                return new DOMParser().parseFromString(html, 'text/html');
+            });
+            return locators.map(function (locator) {
+                try {
+                    nazeelFind([locator[1], locator[2]], true, document);
+                    if (locator[3] < 0) return 'unchecked';
+                    return nazeelFind([locator[1], locator[2]], false, docs[locator[3]]) ? 'ok' : 'no match';
+                } catch (e) {
+                    return e.name + ': ' + e.message;
+                }
+            });
+            """;
+
+    // Returns the names of the locators found on the live page, with the page when there are any
+    private static final String CAPTURE_SCRIPT = Locators.RESOLVER + """
+            var found = arguments[0].filter(function (locator) {
+                try {
+                    return nazeelFind([locator[1], locator[2]], false, document) !== null;
+                } catch (e) {
+                    return false;
+                }
+            }).map(function (locator) { return locator[0]; });
+            return [found, found.length ? document.documentElement.outerHTML : ''];
+            """;
+
+    private static final LocatorCheck listener = new LocatorCheck();
+
+    // Locators captured in this run
+    private static final Set<String> captured = new HashSet<>();
+
+    // Snapshot files written in this run, the only ones it may delete once no locator refers to them
+    private static final Set<String> written = new HashSet<>();
+
+    // Locators of all checked page objects, by "Page.field"
+    private static Map<String, By> declared;
+
+    private static boolean capturing;
+
+    // Outcome of the validation, run once per JVM: null while pending, empty when passed
+    private static String failure;
+
+    private LocatorCheck() {
+    }
+
+    /**
+     * Validates the locators of the page objects, once per JVM.
+     *
+     * @param driver The browser session running the check scripts.
+     * @throws IllegalStateException listing the broken locators, if any and nazeel.locators.validate is fail.
+     */
+    public static synchronized void validate(WebDriver driver) {
+        String mode = Config.get("nazeel.locators.validate", "fail");
+        if (mode.equals("off")) {
+            return;
+        }
+        if (failure == null) {
+            failure = check(driver);
+        }
+        if (!failure.isEmpty()) {
+            if (mode.equals("fail")) {
+                throw new IllegalStateException(failure);
+            }
+            Reports.warn(failure);
+        }
+    }
+
+    /**
+     * Returns the listener capturing the pages on which declared locators are found.
+     *
+     * @return The WebDriver listener.
+     */
+    public static synchronized WebDriverListener captureListener() {
+        if (capturing) {
+            return listener;
+        }
+        capturing = true;
+        Step.addListener(new Step.Listener() {
+            @Override
+            public void stepStarted(Step step) {
+                capture(Hooks.Browser.getDriver());
+            }
+
+            @Override
+            public void stepFinished(Step step) {
+                capture(Hooks.Browser.getDriver());
+            }
+        });
+        return listener;
+    }
+
+    @Override
+    public void afterFindElement(WebDriver driver, By locator, WebElement result) {
+        captureIfNew(driver, locator);
+    }
+
+    @Override
+    public void afterFindElements(WebDriver driver, By locator, List<WebElement> result) {
+        if (!result.isEmpty()) {
+            captureIfNew(driver, locator);
+        }
+    }
+
+    private static synchronized void captureIfNew(WebDriver driver, By locator) {
+        declaredLocators().entrySet().stream()
+                .filter(entry -> entry.getValue().equals(locator) && !captured.contains(entry.getKey()))
+                .findFirst()
+                .ifPresent(entry -> capture(driver));
+    }
+
+    /**
+     * Runs the check script of every page object and describes the broken locators.
+     */
+    private static String check(WebDriver driver) {
+        long start = System.nanoTime();
+        // A capture run refreshes the pages, so its locators are only parsed
+        Properties index = Config.getBoolean("nazeel.locators.capture", false) ? new Properties() : loadIndex();
+        List<String> problems = new ArrayList<>();
+        int resolved = 0;
+        int unchecked = 0;
+        for (String page : Config.getList("nazeel.locators.pages", DEFAULT_PAGES)) {
+            Map<String, By> locators = locatorsOf(page);
+            List<List<Object>> arguments = new ArrayList<>();
+            List<String> docs = new ArrayList<>();
+            Map<String, Integer> docIndexes = new LinkedHashMap<>();
+            for (Map.Entry<String, By> locator : locators.entrySet()) {
+                List<String> remote;
+                try {
+                    remote = Locators.toScriptArgument(locator.getValue());
+                } catch (IllegalArgumentException e) {
+                    problems.add(locator.getKey() + " (" + locator.getValue() + "): not checkable in the page");
+                    continue;
+                }
+                // Each captured page is sent once, however many locators it covers
+                String snapshot = index.getProperty(locator.getKey());
+                int doc = -1;
+                if (snapshot != null && Files.exists(snapshotDir().resolve(snapshot))) {
+                    doc = docIndexes.computeIfAbsent(snapshot, file -> {
+                        docs.add(readSnapshot(file));
+                        return docs.size() - 1;
+                    });
+                }
+                arguments.add(List.<Object>of(locator.getKey(), remote.get(0), remote.get(1), doc));
+            }
+            @SuppressWarnings("unchecked")
+            List<String> results = (List<String>) ((JavascriptExecutor) driver).executeScript(VALIDATE_SCRIPT, arguments, docs);
+            for (int i = 0; i < results.size(); i++) {
+                String name = (String) arguments.get(i).get(0);
+                switch (results.get(i)) {
+                    case "ok" -> resolved++;
+                    case "unchecked" -> unchecked++;
+                    case "no match" -> problems.add(name + " (" + locators.get(name) + "): no match in its captured page "
+                            + index.getProperty(name));
+                    default -> problems.add(name + " (" + locators.get(name) + "): " + results.get(i));
+                }
+            }
+        }
+        Reports.log(String.format("Locator check: %d resolved, %d without captured page, %d broken (%d ms)",
+                resolved, unchecked, problems.size(), (System.nanoTime() - start) / 1_000_000));
+        return problems.isEmpty() ? "" : "Broken locators:" + System.lineSeparator() + "  "
+                + String.join(System.lineSeparator() + "  ", problems);
+    }
+
+    /**
+     * Saves the current page for every declared locator found on it that was not captured yet in this run.
+     */
+    private static synchronized void capture(WebDriver driver) {
+        List<List<String>> pending = new ArrayList<>();
+        declaredLocators().forEach((name, locator) -> {
+            if (!captured.contains(name) && locator instanceof By.Remotable) {
+                List<String> remote = Locators.toScriptArgument(locator);
+                pending.add(List.of(name, remote.get(0), remote.get(1)));
+            }
+        });
+        if (pending.isEmpty() || driver == null) {
+            return;
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            List<Object> result = (List<Object>) ((JavascriptExecutor) driver).executeScript(CAPTURE_SCRIPT, pending);
+            @SuppressWarnings("unchecked")
+            List<String> found = (List<String>) result.get(0);
+            if (found.isEmpty()) {
+                return;
+            }
+            String html = (String) result.get(1);
+            String file = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(html.getBytes(StandardCharsets.UTF_8)), 0, 8) + ".html.gz";
+            Path dir = snapshotDir();
+            Files.createDirectories(dir);
+            try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(dir.resolve(file)))) {
+                output.write(html.getBytes(StandardCharsets.UTF_8));
+            }
+            written.add(file);
+            captured.addAll(found);
+            Properties index = loadIndex();
+            found.forEach(name -> index.setProperty(name, file));
+            saveIndex(index);
+        } catch (WebDriverException e) {
+            Reports.warn("could not capture the page for the locator check: " + e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the locators of all checked page objects, by "Page.field".
+     */
+    private static synchronized Map<String, By> declaredLocators() {
+        if (declared == null) {
+            Map<String, By> locators = new LinkedHashMap<>();
+            Config.getList("nazeel.locators.pages", DEFAULT_PAGES).forEach(page -> locators.putAll(locatorsOf(page)));
+            declared = locators;
+        }
+        return declared;
+    }
+
+    /**
+     * Reads the By fields of a page object, by "Page.field".
+     */
+    private static Map<String, By> locatorsOf(String pageClass) {
+        try {
+            Class<?> page = Class.forName(pageClass);
+            Object instance = page.getDeclaredConstructor().newInstance();
+            Map<String, By> locators = new LinkedHashMap<>();
+            for (Field field : page.getDeclaredFields()) {
+                if (By.class.isAssignableFrom(field.getType())) {
+                    field.setAccessible(true);
+                    By locator = (By) field.get(Modifier.isStatic(field.getModifiers()) ? null : instance);
+                    if (locator != null) {
+                        locators.put(page.getSimpleName() + "." + field.getName(), locator);
+                    }
+                }
+            }
+            return locators;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot read the locators of page object " + pageClass, e);
+        }
+    }
+
+    private static Path snapshotDir() {
+        return Path.of(Config.get("nazeel.locators.snapshots", Config.reportDir().resolve("page-snapshots").toString()));
+    }
+
+    private static String readSnapshot(String file) {
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(snapshotDir().resolve(file)))) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Properties loadIndex() {
+        Properties index = new Properties();
+        Path file = snapshotDir().resolve("index.properties");
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                index.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes the index sorted by locator and deletes the snapshots of this run no locator refers to anymore.
+     */
+    private static void saveIndex(Properties index) throws IOException {
+        Map<String, String> sorted = new TreeMap<>();
+        index.stringPropertyNames().forEach(name -> sorted.put(name, index.getProperty(name)));
+        try (Writer writer = Files.newBufferedWriter(snapshotDir().resolve("index.properties"))) {
+            writer.write("# Captured page of every page object locator, see LocatorCheck" + System.lineSeparator());
+            for (Map.Entry<String, String> entry : sorted.entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue() + System.lineSeparator());
+            }
+        }
+        for (String file : List.copyOf(written)) {
+            if (!sorted.containsValue(file)) {
+                Files.deleteIfExists(snapshotDir().resolve(file));
+                written.remove(file);
+            }
+        }
+    }
+}
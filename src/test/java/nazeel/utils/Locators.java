@@ -0,0 +1,73 @@
+package nazeel.utils;
+
+import org.openqa.selenium.By;
+
+import java.util.List;
+
+/**
+ * Utility class for handing Selenium {@link By} locators over to in-page scripts.
+ * Lets a single script call resolve many locators instead of one findElement round trip per locator.
+ */
+public final class Locators {
+
+    /**
+     * JavaScript helper defining {@code nazeelFind(locator, all, root)}, which resolves a locator
+     * produced by {@link #toScriptArgument(By)} to the first matching element (or null),
+     * or to an array of all matching elements when {@code all} is true. The root may be
+     * an element or a whole document, e.g. one parsed from a captured page.
+     */
+    public static final String RESOLVER = """
+            function nazeelFind(locator, all, root) {
+                var using = locator[0], value = locator[1], scope = root || document, nodes;
+                switch (using) {
+                    case 'css selector':
+                    case 'tag name':
+                        nodes = scope.querySelectorAll(value);
+                        break;
+                    case 'id':
+                        nodes = scope.querySelectorAll('#' + CSS.escape(value));
+                        break;
+                    case 'class name':
+                        nodes = scope.querySelectorAll('.' + CSS.escape(value));
+                        break;
+                    case 'name':
+                        nodes = scope.querySelectorAll('[name="' + CSS.escape(value) + '"]');
+                        break;
+                    case 'xpath':
+                        var result = (scope.ownerDocument || scope).evaluate(value, scope, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);
+                        nodes = [];
+                        for (var i = 0; i < result.snapshotLength; i++) nodes.push(result.snapshotItem(i));
+                        break;
+                    case 'link text':
+                    case 'partial link text':
+                        nodes = Array.prototype.filter.call(scope.querySelectorAll('a'), function (link) {
+                            var text = link.innerText.trim();
+                            return using === 'link text' ? text === value : text.indexOf(value) >= 0;
+                        });
+                        break;
+                    default:
+                        throw new Error('Unsupported locator strategy: ' + using);
+                }
+                nodes = Array.prototype.slice.call(nodes);
+                return all ? nodes : (nodes[0] || null);
+            }
+            """;
+
+    private Locators() {
+    }
+
+    /**
+     * Converts a locator to the [strategy, value] pair understood by {@link #RESOLVER}.
+     *
+     * @param locator The locator to convert.
+     * @return A two-element list holding the locator strategy and its value.
+     * @throws IllegalArgumentException if the locator cannot be expressed as a strategy/value pair.
+     */
+    public static List<String> toScriptArgument(By locator) {
+        if (locator instanceof By.Remotable remotable) {
+            By.Remotable.Parameters parameters = remotable.getRemoteParameters();
+            return List.of(parameters.using(), String.valueOf(parameters.value()));
+        }
+        throw new IllegalArgumentException("Locator cannot be resolved inside the page: " + locator);
+    }
+}
@@ -0,0 +1,179 @@
+package nazeel.utils;
+
+import nazeel.Hooks;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.testng.Assert;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the front-end performance of the pages the flow reaches and checks it against per-page budgets.
+ * <p>
+ * Metrics: lcpMs (first capture after a document load only), cls, inpMs, longTasks, tbtMs (total blocking time),
+ * jsHeapMb and domNodes. Layout shifts, interactions and long tasks are counted since the previous capture,
+ * so every page of the single-page app is judged on its own work.
+ * <p>
+ * Budgets are read from perf-budgets.properties on the test classpath as "page.metric=maximum"
+ * and can be overridden with the nazeel.budget.page.metric setting. An exceeded budget fails the test; with
+ * nazeel.budgets.enforce=false it is only reported. Collection is disabled with nazeel.vitals=false.
+ * <p>
+ * web-vitals.csv in the report folder gets one row per metric: epochMillis,page,metric,value,budget,exceeded.
+ */
+public final class PagePerformance {
+
+    // Observer script registered for every new document, buffering the metrics inside the page
+    private static final String OBSERVER_SCRIPT = """
+            (function () {
+                if (window.__nazeelVitals) return;
+                var vitals = window.__nazeelVitals = {lcp: null, lcpReported: false, cls: 0, inp: 0, longTasks: 0, tbt: 0};
+                function observe(type, callback, options) {
+                    try {
+                        new PerformanceObserver(function (list) { list.getEntries().forEach(callback); })
+                                .observe(Object.assign({type: type, buffered: true}, options || {}));
+                    } catch (e) {
+                        // Entry type not supported by this browser
+                    }
+                }
+                observe('largest-contentful-paint', function (entry) { vitals.lcp = entry.startTime; });
+                observe('layout-shift', function (entry) { if (!entry.hadRecentInput) vitals.cls += entry.value; });
+                observe('event', function (entry) {
+                    if (entry.interactionId) vitals.inp = Math.max(vitals.inp, entry.duration);
+                }, {durationThreshold: 16});
+                observe('longtask', function (entry) {
+                    vitals.longTasks++;
+                    vitals.tbt += Math.max(0, entry.duration - 50);
+                });
+            })();
+            """;
+
+    // Script reading the buffered metrics and starting a new measuring window
+    private static final String CAPTURE_SCRIPT = """
+            var vitals = window.__nazeelVitals;
+            if (!vitals) return null;
+            var result = {lcpMs: vitals.lcpReported ? null : vitals.lcp, cls: vitals.cls, inpMs: vitals.inp,
+                    longTasks: vitals.longTasks, tbtMs: vitals.tbt};
+            vitals.lcpReported = vitals.lcp !== null;
+            vitals.cls = 0;
+            vitals.inp = 0;
+            vitals.longTasks = 0;
+            vitals.tbt = 0;
+            return result;
+            """;
+
+    private static final String HEADER = "epochMillis,page,metric,value,budget,exceeded";
+
+    // Budgets declared in perf-budgets.properties
+    private static final Properties budgets = loadBudgets();
+
+    private PagePerformance() {
+    }
+
+    /**
+     * Registers the metric observers on a freshly opened browser, before any page is loaded.
+     *
+     * @param driver The driver to observe.
+     */
+    public static void install(WebDriver driver) {
+        if (!Config.getBoolean("nazeel.vitals", true)) {
+            return;
+        }
+        Cdp.send(driver, "Performance.enable", Map.of());
+        Cdp.send(driver, "Page.enable", Map.of());
+        Cdp.send(driver, "Page.addScriptToEvaluateOnNewDocument", Map.of("source", OBSERVER_SCRIPT));
+    }
+
+    /**
+     * Captures the metrics of the current page, appends them to web-vitals.csv and reports the budgets of the page
+     * it exceeds, failing the test on them unless nazeel.budgets.enforce=false.
+     *
+     * @param page The page name used in the report and the budget keys, e.g. "login".
+     * @return The captured metrics by name; empty when collection is disabled.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Double> capture(String page) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        if (!Config.getBoolean("nazeel.vitals", true)) {
+            return metrics;
+        }
+        WebDriver driver = Hooks.Browser.getDriver();
+
+        Map<String, Object> vitals = (Map<String, Object>) ((JavascriptExecutor) driver).executeScript(CAPTURE_SCRIPT);
+        if (vitals != null) {
+            vitals.forEach((name, value) -> {
+                if (value instanceof Number number) {
+                    metrics.put(name, number.doubleValue());
+                }
+            });
+        }
+
+        List<Map<String, Object>> cdpMetrics = (List<Map<String, Object>>) Cdp.send(driver, "Performance.getMetrics", Map.of()).get("metrics");
+        for (Map<String, Object> metric : cdpMetrics) {
+            switch ((String) metric.get("name")) {
+                case "JSHeapUsedSize" -> metrics.put("jsHeapMb", Cdp.number(metric, "value") / (1024 * 1024));
+                case "Nodes" -> metrics.put("domNodes", Cdp.number(metric, "value"));
+                default -> {
+                }
+            }
+        }
+
+        // Under an emulation profile only the budgets declared for "page@profile" apply
+        checkBudgets(EmulationProfile.label(page), metrics);
+        return metrics;
+    }
+
+    /**
+     * Records the metrics of a page and reports every metric exceeding its budget,
+     * failing the test on them when enforcement is on.
+     */
+    private static void checkBudgets(String page, Map<String, Double> metrics) {
+        List<String> violations = new ArrayList<>();
+        StringBuilder rows = new StringBuilder();
+        long now = System.currentTimeMillis();
+        metrics.forEach((metric, value) -> {
+            String budget = Config.get("nazeel.budget." + page + "." + metric, budgets.getProperty(page + "." + metric));
+            boolean exceeded = budget != null && value > Double.parseDouble(budget);
+            if (exceeded) {
+                violations.add(String.format(Locale.ROOT, "%s = %.2f (budget %s)", metric, value, budget));
+            }
+            rows.append(String.join(",", String.valueOf(now), page, metric, String.format(Locale.ROOT, "%.3f", value),
+                    budget == null ? "" : budget, String.valueOf(exceeded))).append(System.lineSeparator());
+        });
+        Reports.log("Web vitals [" + page + "] " + metrics.entrySet().stream()
+                .map(metric -> metric.getKey() + "=" + String.format(Locale.ROOT, "%.3f", metric.getValue()))
+                .collect(Collectors.joining(" ")));
+        Reports.append("web-vitals.csv", HEADER, rows);
+
+        if (!violations.isEmpty()) {
+            String message = "Performance budget exceeded on page '" + page + "': " + String.join(", ", violations);
+            if (Config.getBoolean("nazeel.budgets.enforce", true)) {
+                Assert.fail(message);
+            }
+            Reports.warn(message);
+        }
+    }
+
+    /**
+     * Loads the budgets from perf-budgets.properties on the test classpath, if present.
+     */
+    private static Properties loadBudgets() {
+        Properties properties = new Properties();
+        try (InputStream input = PagePerformance.class.getClassLoader().getResourceAsStream("perf-budgets.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,74 @@
+package nazeel.utils;
+
+import org.testng.Reporter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Shared output of the harness: messages go to the TestNG report of the running test (and the console),
+ * and CSV reports are appended to files in the report folder, with their header written once.
+ */
+public final class Reports {
+
+    private Reports() {
+    }
+
+    /**
+     * Logs a message to the TestNG report and the console.
+     *
+     * @param message The message.
+     */
+    public static void log(String message) {
+        Reporter.log(message, true);
+    }
+
+    /**
+     * Logs a warning, i.e. a problem that does not fail the test, to the TestNG report and the console.
+     *
+     * @param message The warning.
+     */
+    public static void warn(String message) {
+        log("WARNING: " + message);
+    }
+
+    /**
+     * Appends rows to a CSV file of the report folder, writing its header first when the file is new.
+     *
+     * @param fileName The file name in the report folder, e.g. "web-vitals.csv".
+     * @param header   The header line, or null for none.
+     * @param rows     The rows, each ended by a line separator.
+     * @return The report file.
+     * @throws UncheckedIOException if the file cannot be written.
+     */
+    public static Path append(String fileName, String header, CharSequence rows) {
+        Path report = Config.reportDir().resolve(fileName);
+        append(report, header, rows);
+        return report;
+    }
+
+    /**
+     * Appends rows to a CSV file, writing its header first when the file is new.
+     *
+     * @param file   The file, created with its folders when missing.
+     * @param header The header line, or null for none.
+     * @param rows   The rows, each ended by a line separator.
+     * @throws UncheckedIOException if the file cannot be written.
+     */
+    public static synchronized void append(Path file, String header, CharSequence rows) {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            if (header != null && Files.notExists(file)) {
+                Files.writeString(file, header + System.lineSeparator());
+            }
+            Files.writeString(file, rows, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package nazeel.utils;
+
+import nazeel.utils.ReservationLedger.Reservation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Checks out or cancels, in bulk and in parallel, the reservations tests left open.
+ * <p>
+ * Cleanups run on background worker threads, each driving its own {@link Closer} (e.g. a logged-in browser
+ * session), so they never block the tests still running. The unit of each reservation stays leased until it is
+ * closed, so no test reserves it while the cleanup runs. Settings:
+ * - nazeel.cleanup.parallelism: number of concurrent workers (default 2).
+ * - nazeel.cleanup.timeoutMinutes: how long the final sweep waits for the workers (default 15).
+ * Every outcome is appended to cleanup-report.csv in the report folder.
+ */
+public final class ReservationCleanup {
+
+    /**
+     * Closes reservations, one at a time, on its own session.
+     */
+    public interface Closer extends AutoCloseable {
+        /**
+         * Checks out or cancels a reservation.
+         *
+         * @param reservation The reservation to close.
+         * @return A short outcome, e.g. "CHECKED_OUT" or "ALREADY_CLOSED"; an outcome starting with "SKIPPED"
+         * leaves the reservation open in the ledger.
+         * @throws Exception if the reservation could not be closed.
+         */
+        String close(Reservation reservation) throws Exception;
+
+        /**
+         * Releases the session of the closer.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Outcome of one cleanup.
+     *
+     * @param reservation The reservation.
+     * @param outcome     The closer outcome, or "FAILED: reason".
+     * @param durationMs  The time spent on it.
+     */
+    public record Result(Reservation reservation, String outcome, long durationMs) {
+    }
+
+    private static final String HEADER = "unit,guest,test,outcome,durationMs";
+
+    // Units being cleaned up right now, so a reservation is never closed twice
+    private static final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Cleanups started in the background
+    private static final Queue<CompletableFuture<List<Result>>> started = new ConcurrentLinkedQueue<>();
+
+    private static final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofPlatform().name("reservation-cleanup-", 0).daemon().factory());
+
+    private ReservationCleanup() {
+    }
+
+    /**
+     * Starts closing reservations in the background and returns immediately.
+     *
+     * @param reservations  The reservations to close.
+     * @param closerFactory Creates the closer of each worker.
+     * @return The future results.
+     */
+    public static CompletableFuture<List<Result>> submit(List<Reservation> reservations, Supplier<Closer> closerFactory) {
+        Queue<Reservation> queue = new ConcurrentLinkedQueue<>();
+        reservations.stream().filter(reservation -> inFlight.add(reservation.unitNumber())).forEach(queue::add);
+        if (queue.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        int parallelism = Math.min(queue.size(), Math.max(1, Config.getInt("nazeel.cleanup.parallelism", 2)));
+        List<CompletableFuture<List<Result>>> workerResults = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            workerResults.add(CompletableFuture.supplyAsync(() -> drain(queue, closerFactory), workers));
+        }
+        CompletableFuture<List<Result>> results = CompletableFuture.allOf(workerResults.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> workerResults.stream().flatMap(worker -> worker.join().stream()).toList());
+        started.add(results);
+        return results;
+    }
+
+    /**
+     * Waits for the background cleanups, then closes every reservation still open in the ledger
+     * (including those of previous runs) and reports what was cleaned.
+     *
+     * @param closerFactory Creates the closer of each worker.
+     * @return The results of all cleanups of this run.
+     */
+    public static List<Result> sweep(Supplier<Closer> closerFactory) {
+        submit(ReservationLedger.open(), closerFactory);
+
+        List<Result> results = new ArrayList<>();
+        CompletableFuture<List<Result>> cleanup;
+        long deadline = System.nanoTime() + Duration.ofMinutes(Config.getInt("nazeel.cleanup.timeoutMinutes", 15)).toNanos();
+        while ((cleanup = started.poll()) != null) {
+            try {
+                results.addAll(cleanup.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                Reports.warn("reservation cleanup still running after the timeout; leftovers stay in the ledger.");
+                break;
+            } catch (Exception e) {
+                Reports.warn("reservation cleanup failed: " + e);
+            }
+        }
+        report(results);
+        return results;
+    }
+
+    /**
+     * Closes queued reservations one after the other on a single closer.
+     */
+    private static List<Result> drain(Queue<Reservation> queue, Supplier<Closer> closerFactory) {
+        List<Result> results = new ArrayList<>();
+        Closer closer = null;
+        try {
+            Reservation reservation;
+            while ((reservation = queue.poll()) != null) {
+                long start = System.nanoTime();
+                String outcome;
+                try {
+                    if (!ReservationLedger.holdLease(reservation.unitNumber())) {
+                        // A running test leased the unit, so the reservation on it may be that test's own
+                        results.add(new Result(reservation, "SKIPPED: unit leased by a running test",
+                                (System.nanoTime() - start) / 1_000_000));
+                        continue;
+                    }
+                    if (closer == null) {
+                        closer = closerFactory.get();
+                    }
+                    outcome = closer.close(reservation);
+                    if (outcome.startsWith("SKIPPED")) {
+                        ReservationLedger.releaseLease(reservation.unitNumber());
+                    } else {
+                        ReservationLedger.closed(reservation.unitNumber());
+                    }
+                } catch (Exception e) {
+                    outcome = "FAILED: " + String.valueOf(e.getMessage()).lines().findFirst().orElse(e.toString());
+                    ReservationLedger.releaseLease(reservation.unitNumber());
+                } finally {
+                    inFlight.remove(reservation.unitNumber());
+                }
+                results.add(new Result(reservation, outcome, (System.nanoTime() - start) / 1_000_000));
+            }
+        } finally {
+            if (closer != null) {
+                closer.close();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Prints the cleaned reservations and appends them to cleanup-report.csv.
+     */
+    private static void report(List<Result> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+        StringBuilder rows = new StringBuilder();
+        for (Result result : results) {
+            rows.append(String.join(",", result.reservation().unitNumber(), result.reservation().guestId(),
+                    result.reservation().test(), result.outcome().replace(',', ';'), String.valueOf(result.durationMs())))
+                    .append(System.lineSeparator());
+        }
+        Reports.log("Reservation cleanup (" + HEADER + ")" + System.lineSeparator() + rows);
+        Reports.append("cleanup-report.csv", HEADER, rows);
+    }
+}
@@ -0,0 +1,168 @@
+package nazeel.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only ledger of the reservations tests create, so the ones left open by failed tests can be cleaned up.
+ * <p>
+ * Lines of open-reservations.tsv in the nazeel.history.dir folder are either
+ * "OPEN unit guest test epochMillis" or "CLOSED unit"; a reservation is open until a later CLOSED line names its unit.
+ * The {@link UnitAllocator} lease of a recorded unit is held until its reservation is closed, including by a
+ * background cleanup after the test ended, so no other test can lease the unit in between.
+ */
+public final class ReservationLedger {
+
+    /**
+     * A reservation created by a test.
+     *
+     * @param unitNumber   The reserved unit.
+     * @param guestId      The guest ID number of the reservation.
+     * @param test         The test that created it.
+     * @param openedMillis The time it was created.
+     */
+    public record Reservation(String unitNumber, String guestId, String test, long openedMillis) {
+    }
+
+    // Reservations opened and not yet closed by the test running on each thread
+    private static final ThreadLocal<List<Reservation>> pending = ThreadLocal.withInitial(ArrayList::new);
+
+    // Unit leases held until the reservation on the unit is closed, by unit number
+    private static final Map<String, UnitAllocator.Lease> unitLeases = new ConcurrentHashMap<>();
+
+    private ReservationLedger() {
+    }
+
+    /**
+     * Records a reservation created by the current test, taking over the test's lease of the unit.
+     *
+     * @param unitNumber The reserved unit.
+     * @param guestId    The guest ID number of the reservation.
+     * @param test       The test creating it.
+     */
+    public static void opened(String unitNumber, String guestId, String test) {
+        Reservation reservation = new Reservation(unitNumber, guestId, test, System.currentTimeMillis());
+        pending.get().add(reservation);
+        UnitAllocator.Lease lease = UnitAllocator.detach(unitNumber);
+        if (lease != null) {
+            unitLeases.put(unitNumber, lease);
+        }
+        append(String.join("\t", "OPEN", clean(unitNumber), clean(guestId), clean(test),
+                String.valueOf(reservation.openedMillis())));
+    }
+
+    /**
+     * Records that the reservation of a unit was checked out or cancelled, and frees the unit's lease.
+     *
+     * @param unitNumber The unit whose reservation was closed.
+     */
+    public static void closed(String unitNumber) {
+        pending.get().removeIf(reservation -> reservation.unitNumber().equals(unitNumber));
+        append(String.join("\t", "CLOSED", clean(unitNumber)));
+        releaseLease(unitNumber);
+    }
+
+    /**
+     * Frees the lease held for the open reservation of a unit that was left open, e.g. because its cleanup failed
+     * or was skipped; the reservation stays in the ledger for a later cleanup.
+     *
+     * @param unitNumber The unit of the reservation.
+     */
+    public static void releaseLease(String unitNumber) {
+        UnitAllocator.Lease lease = unitLeases.remove(unitNumber);
+        if (lease != null) {
+            lease.close();
+        }
+    }
+
+    /**
+     * Makes sure the unit of an open reservation is leased before it is cleaned up, leasing it now for reservations
+     * recorded by an earlier run; the lease is freed when the reservation is closed.
+     *
+     * @param unitNumber The unit of the reservation.
+     * @return true if the unit is leased for the cleanup, false if a running test holds it.
+     */
+    public static boolean holdLease(String unitNumber) {
+        if (unitLeases.containsKey(unitNumber)) {
+            return true;
+        }
+        if (UnitAllocator.acquire(List.of(unitNumber)) == null) {
+            return false;
+        }
+        unitLeases.put(unitNumber, UnitAllocator.detach(unitNumber));
+        return true;
+    }
+
+    /**
+     * Returns and forgets the reservations the current thread opened and did not close.
+     *
+     * @return The reservations left open by the current test.
+     */
+    public static List<Reservation> takePending() {
+        List<Reservation> reservations = List.copyOf(pending.get());
+        pending.remove();
+        return reservations;
+    }
+
+    /**
+     * Reads every reservation still open in the ledger, including those of previous runs.
+     *
+     * @return The open reservations, oldest first.
+     */
+    public static List<Reservation> open() {
+        Map<String, Reservation> open = new LinkedHashMap<>();
+        if (Files.exists(file())) {
+            try (BufferedReader reader = Files.newBufferedReader(file())) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t");
+                    if (fields[0].equals("OPEN") && fields.length == 5) {
+                        open.put(fields[1], new Reservation(fields[1], fields[2], fields[3], Long.parseLong(fields[4])));
+                    } else if (fields[0].equals("CLOSED") && fields.length == 2) {
+                        open.remove(fields[1]);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return List.copyOf(open.values());
+    }
+
+    private static Path file() {
+        return Path.of(Config.get("nazeel.history.dir", "perf-history")).resolve("open-reservations.tsv");
+    }
+
+    private static String clean(String value) {
+        return value.replaceAll("[\\t\\n\\r]", " ");
+    }
+
+    /**
+     * Appends a line under an exclusive file lock, so forked JVMs can share the ledger.
+     */
+    private static void append(String line) {
+        try {
+            Files.createDirectories(file().getParent());
+            try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+                 FileLock ignored = channel.lock()) {
+                channel.write(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
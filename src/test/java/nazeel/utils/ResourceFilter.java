@@ -0,0 +1,219 @@
+package nazeel.utils;
+
+import org.openqa.selenium.WebDriver;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * CDP based filter keeping assets the assertions never need (fonts, images, analytics...) from loading.
+ * <p>
+ * Settings (system properties or suite parameters):
+ * - nazeel.resourceFilter: "off" (default), "observe" to only measure what would be blocked, or "block".
+ * - nazeel.resourceFilter.urls: comma-separated URL patterns, "*" matching any characters.
+ * - nazeel.resourceFilter.types: comma-separated CDP resource types, e.g. "Image,Font,Media".
+ * <p>
+ * Traffic is grouped per page (document or in-app route), and {@link #report()} writes, per page, the requests
+ * and bytes loaded, the requests blocked, and in observe mode the requests and bytes that blocking would save.
+ */
+public class ResourceFilter {
+    // Filter modes
+    public static final String OFF = "off";
+    public static final String OBSERVE = "observe";
+    public static final String BLOCK = "block";
+
+    private static final String DEFAULT_URLS = "*.woff*,*.ttf,*.otf,*google-analytics.com*,*googletagmanager.com*,"
+            + "*hotjar*,*clarity.ms*,*facebook.net*,*doubleclick.net*";
+    private static final String DEFAULT_TYPES = "Image,Font,Media";
+
+    private final WebDriver driver;
+    private final String mode;
+    private final List<String> urlPatterns;
+    private final Set<String> resourceTypes;
+    private final List<Pattern> urlRegexes;
+
+    // Traffic statistics per page visit, in navigation order
+    private final Queue<PageStats> pages = new ConcurrentLinkedQueue<>();
+
+    // Page and resource of every in-flight request, by CDP request id
+    private final Map<String, RequestInfo> requests = new ConcurrentHashMap<>();
+
+    private volatile PageStats currentPage;
+    private volatile String mainFrameId;
+
+    private ResourceFilter(WebDriver driver, String mode) {
+        this.driver = driver;
+        this.mode = mode;
+        this.urlPatterns = Config.getList("nazeel.resourceFilter.urls", DEFAULT_URLS);
+        this.resourceTypes = Set.copyOf(Config.getList("nazeel.resourceFilter.types", DEFAULT_TYPES));
+        this.urlRegexes = urlPatterns.stream().map(ResourceFilter::toRegex).toList();
+    }
+
+    /**
+     * Installs the filter on a freshly opened browser when enabled by the nazeel.resourceFilter setting.
+     *
+     * @param driver The driver to filter.
+     * @return The installed filter, or null when the filter is off.
+     */
+    public static ResourceFilter install(WebDriver driver) {
+        String mode = Config.get("nazeel.resourceFilter", OFF).toLowerCase();
+        if (mode.equals(OFF)) {
+            return null;
+        }
+        if (!mode.equals(OBSERVE) && !mode.equals(BLOCK)) {
+            throw new IllegalArgumentException("Invalid nazeel.resourceFilter mode: " + mode);
+        }
+        ResourceFilter filter = new ResourceFilter(driver, mode);
+        filter.listen();
+        return filter;
+    }
+
+    /**
+     * Subscribes to the page and network events and, in block mode, blocks the configured URLs and resource types.
+     */
+    @SuppressWarnings("unchecked")
+    private void listen() {
+        Cdp.send(driver, "Page.enable", Map.of());
+        Cdp.send(driver, "Network.enable", Map.of());
+
+        Cdp.on(driver, "Page.frameNavigated", event -> {
+            Map<String, Object> frame = (Map<String, Object>) event.get("frame");
+            if (frame.get("parentId") == null) {
+                mainFrameId = (String) frame.get("id");
+                page((String) frame.get("url"));
+            }
+        });
+        Cdp.on(driver, "Page.navigatedWithinDocument", event -> {
+            if (event.get("frameId").equals(mainFrameId)) {
+                page((String) event.get("url"));
+            }
+        });
+        Cdp.on(driver, "Network.requestWillBeSent", event -> {
+            Map<String, Object> request = (Map<String, Object>) event.get("request");
+            String url = (String) request.get("url");
+            String type = String.valueOf(event.get("type"));
+            Object frameId = event.get("frameId");
+            PageStats page = "Document".equals(type) && (mainFrameId == null || mainFrameId.equals(frameId))
+                    ? page(url) : currentPage != null ? currentPage : page(url);
+            page.requests.increment();
+            requests.put((String) event.get("requestId"), new RequestInfo(page, isFiltered(url, type)));
+        });
+        Cdp.on(driver, "Network.loadingFinished", event -> {
+            RequestInfo request = requests.remove((String) event.get("requestId"));
+            if (request != null) {
+                long bytes = (long) Cdp.number(event, "encodedDataLength");
+                request.page.loadedBytes.add(bytes);
+                request.page.lastFinishedNanos = System.nanoTime();
+                if (request.filtered) {
+                    request.page.blockableRequests.increment();
+                    request.page.blockableBytes.add(bytes);
+                }
+            }
+        });
+        Cdp.on(driver, "Network.loadingFailed", event -> {
+            RequestInfo request = requests.remove((String) event.get("requestId"));
+            if (request != null && (event.get("blockedReason") != null
+                    || "net::ERR_BLOCKED_BY_CLIENT".equals(event.get("errorText")))) {
+                request.page.blockedRequests.increment();
+            }
+        });
+
+        if (mode.equals(BLOCK)) {
+            Cdp.send(driver, "Network.setBlockedURLs", Map.of("urls", urlPatterns));
+            List<Map<String, Object>> patterns = resourceTypes.stream()
+                    .map(type -> Map.<String, Object>of("urlPattern", "*", "resourceType", type, "requestStage", "Request"))
+                    .toList();
+            Cdp.intercept(driver, patterns, pausedRequest -> {
+                if (!resourceTypes.contains(String.valueOf(pausedRequest.get("resourceType")))) {
+                    return false;
+                }
+                Cdp.send(driver, "Fetch.failRequest",
+                        Map.of("requestId", pausedRequest.get("requestId"), "errorReason", "BlockedByClient"));
+                return true;
+            });
+        }
+    }
+
+    /**
+     * Checks whether a request is covered by the configured URL patterns or resource types.
+     */
+    private boolean isFiltered(String url, String type) {
+        return resourceTypes.contains(type) || urlRegexes.stream().anyMatch(regex -> regex.matcher(url).matches());
+    }
+
+    /**
+     * Returns the statistics of the current page visit, starting a new visit when the main frame moved to another URL.
+     */
+    private synchronized PageStats page(String url) {
+        String key = url.replaceAll("[?#].*$", "");
+        PageStats page = currentPage;
+        if (page == null || !page.url.equals(key)) {
+            page = new PageStats(key);
+            pages.add(page);
+            currentPage = page;
+        }
+        return page;
+    }
+
+    /**
+     * Converts a "*" wildcard URL pattern to a regular expression.
+     */
+    private static Pattern toRegex(String urlPattern) {
+        return Pattern.compile(Pattern.quote(urlPattern).replace("*", "\\E.*\\Q"));
+    }
+
+    /**
+     * Prints the per-page statistics and appends them to resource-filter.csv in the report folder.
+     */
+    public void report() {
+        String header = "mode,page,requests,loadedBytes,blockedRequests,blockableRequests,blockableBytes,pageLoadMs";
+        String rows = pages.stream()
+                .filter(page -> page.requests.sum() > 0)
+                .map(page -> String.join(",", mode, "\"" + page.url.replace("\"", "\"\"") + "\"",
+                        String.valueOf(page.requests.sum()), String.valueOf(page.loadedBytes.sum()),
+                        String.valueOf(page.blockedRequests.sum()), String.valueOf(page.blockableRequests.sum()),
+                        String.valueOf(page.blockableBytes.sum()), String.valueOf(page.loadMillis())))
+                .collect(Collectors.joining(System.lineSeparator()));
+        if (rows.isEmpty()) {
+            return;
+        }
+        Reports.log("Resource filter (" + mode + ")" + System.lineSeparator() + header + System.lineSeparator() + rows);
+        Reports.append("resource-filter.csv", header, rows + System.lineSeparator());
+    }
+
+    /**
+     * Traffic statistics of one page.
+     */
+    private static final class PageStats {
+        private final String url;
+        private final long startNanos = System.nanoTime();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder loadedBytes = new LongAdder();
+        private final LongAdder blockedRequests = new LongAdder();
+        private final LongAdder blockableRequests = new LongAdder();
+        private final LongAdder blockableBytes = new LongAdder();
+        private volatile long lastFinishedNanos;
+
+        private PageStats(String url) {
+            this.url = url;
+        }
+
+        // Time from the navigation to the last finished request of the page
+        private long loadMillis() {
+            return lastFinishedNanos == 0 ? 0 : (lastFinishedNanos - startNanos) / 1_000_000;
+        }
+    }
+
+    /**
+     * Page and filter verdict of an in-flight request.
+     */
+    private record RequestInfo(PageStats page, boolean filtered) {
+    }
+}
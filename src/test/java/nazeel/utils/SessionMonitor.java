@@ -0,0 +1,198 @@
+package nazeel.utils;
+
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.WebDriver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tracks the memory of a browser session across the tests reusing it, and tells when the session should be
+ * replaced by a fresh one before it slows the application down.
+ * <p>
+ * When sampling is on, around every test it samples the JS heap and DOM node count (CDP Performance.getMetrics,
+ * after a garbage collection) and the resident memory of the browser processes (Linux /proc), and appends the
+ * growth to session-memory.csv in the report folder. Sampling is on when nazeel.session.monitor=true, when a memory
+ * limit is set or in soak mode; a failed sample is logged and skipped, never failing the test. Settings:
+ * - nazeel.session.monitor: samples the memory without any limit, for the report alone (default false).
+ * - nazeel.session.maxTests: tests run on a session before it is recycled (default 0, never); needs no sampling.
+ * - nazeel.session.maxHeapMb: JS heap above which the session is recycled (default 0, never).
+ * - nazeel.session.maxRssMb: browser resident memory above which the session is recycled (default 0, never).
+ * - nazeel.session.leakWarnMb: JS heap growth of a single test reported as a possible leak (default 20).
+ */
+public class SessionMonitor {
+    private static final String HEADER = "test,sessionTest,heapBeforeMb,heapAfterMb,heapGrowthMb,"
+            + "domNodesBefore,domNodesAfter,rssBeforeMb,rssAfterMb,recycle";
+
+    /**
+     * Memory of a session at one point in time.
+     *
+     * @param jsHeapMb The used JS heap of the page in MB.
+     * @param domNodes The DOM node count of the page.
+     * @param rssMb    The resident memory of all browser processes in MB, or 0 where unavailable.
+     */
+    public record Sample(double jsHeapMb, long domNodes, double rssMb) {
+    }
+
+    private final WebDriver driver;
+    private final String userDataDir;
+    private int tests;
+    private Sample before;
+    private Sample last;
+    private boolean recycle;
+
+    /**
+     * Starts monitoring a freshly opened browser session.
+     *
+     * @param driver The session to monitor.
+     */
+    @SuppressWarnings("unchecked")
+    public SessionMonitor(WebDriver driver) {
+        this.driver = driver;
+        Object chrome = ((HasCapabilities) Cdp.unwrap(driver)).getCapabilities().getCapability("chrome");
+        this.userDataDir = chrome instanceof Map<?, ?> options ? (String) ((Map<String, Object>) options).get("userDataDir") : null;
+        if (isSampling()) {
+            Cdp.send(driver, "Performance.enable", Map.of());
+        }
+    }
+
+    /**
+     * Checks if the session memory is sampled around the tests.
+     *
+     * @return true if enabled by nazeel.session.monitor, a memory limit or the soak mode, false otherwise.
+     */
+    public static boolean isSampling() {
+        return Config.getBoolean("nazeel.session.monitor", false)
+                || Config.getDouble("nazeel.session.maxHeapMb", 0) > 0
+                || Config.getDouble("nazeel.session.maxRssMb", 0) > 0
+                || SoakMonitor.active();
+    }
+
+    /**
+     * Samples the session memory before a test, when sampling is on.
+     */
+    public void testStarted() {
+        before = isSampling() ? trySample() : null;
+    }
+
+    /**
+     * Counts a finished test and, when sampling is on, samples the session memory and reports its growth;
+     * then decides whether the session must be recycled.
+     *
+     * @param test The test name.
+     */
+    public void testFinished(String test) {
+        tests++;
+        int maxTests = Config.getInt("nazeel.session.maxTests", 0);
+        Sample after = isSampling() ? trySample() : null;
+        last = after;
+        recycle = maxTests > 0 && tests >= maxTests;
+        if (after == null) {
+            return;
+        }
+        double maxHeapMb = Config.getDouble("nazeel.session.maxHeapMb", 0);
+        double maxRssMb = Config.getDouble("nazeel.session.maxRssMb", 0);
+        recycle = recycle
+                || maxHeapMb > 0 && after.jsHeapMb() > maxHeapMb
+                || maxRssMb > 0 && after.rssMb() > maxRssMb;
+
+        Sample start = before != null ? before : after;
+        double growthMb = after.jsHeapMb() - start.jsHeapMb();
+        if (growthMb > Config.getDouble("nazeel.session.leakWarnMb", 20)) {
+            Reports.warn(String.format(Locale.ROOT, "%s grew the JS heap by %.1f MB (%.1f -> %.1f MB), %d -> %d DOM nodes; possible leak.",
+                    test, growthMb, start.jsHeapMb(), after.jsHeapMb(), start.domNodes(), after.domNodes()));
+        }
+        String row = String.join(",", test, String.valueOf(tests),
+                format(start.jsHeapMb()), format(after.jsHeapMb()), format(growthMb),
+                String.valueOf(start.domNodes()), String.valueOf(after.domNodes()),
+                format(start.rssMb()), format(after.rssMb()), String.valueOf(recycle));
+        Reports.append("session-memory.csv", HEADER, row + System.lineSeparator());
+    }
+
+    /**
+     * Checks if the session reached a recycling limit after its last test.
+     *
+     * @return true if the session should be replaced before the next test, false otherwise.
+     */
+    public boolean shouldRecycle() {
+        return recycle;
+    }
+
+    /**
+     * Returns the session memory sampled after the last test.
+     *
+     * @return The memory sample, or null before the first test finished or when it was not sampled.
+     */
+    public Sample lastSample() {
+        return last;
+    }
+
+    /**
+     * Samples the session memory, logging instead of throwing when the browser cannot be sampled.
+     */
+    private Sample trySample() {
+        try {
+            return sample();
+        } catch (RuntimeException e) {
+            Reports.warn("could not sample the session memory: "
+                    + String.valueOf(e.getMessage()).lines().findFirst().orElse(e.toString()));
+            return null;
+        }
+    }
+
+    /**
+     * Samples the current memory of the session.
+     *
+     * @return The memory sample.
+     */
+    @SuppressWarnings("unchecked")
+    public Sample sample() {
+        Cdp.send(driver, "HeapProfiler.collectGarbage", Map.of());
+        double jsHeap = 0;
+        long nodes = 0;
+        for (Map<String, Object> metric : (List<Map<String, Object>>) Cdp.send(driver, "Performance.getMetrics", Map.of()).get("metrics")) {
+            switch (String.valueOf(metric.get("name"))) {
+                case "JSHeapUsedSize" -> jsHeap = Cdp.number(metric, "value");
+                case "Nodes" -> nodes = (long) Cdp.number(metric, "value");
+                default -> {
+                }
+            }
+        }
+        return new Sample(jsHeap / (1024 * 1024), nodes, browserRssKb() / 1024.0);
+    }
+
+    /**
+     * Sums the resident memory of the processes started with the session's user data folder,
+     * i.e. the browser, renderer, GPU and utility processes of this session only.
+     */
+    private long browserRssKb() {
+        if (userDataDir == null || Files.notExists(Path.of("/proc"))) {
+            return 0;
+        }
+        return ProcessHandle.allProcesses()
+                .filter(process -> process.info().commandLine().map(line -> line.contains(userDataDir)).orElse(false))
+                .mapToLong(process -> rssKb(process.pid()))
+                .sum();
+    }
+
+    private static long rssKb(long pid) {
+        try {
+            return Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status")).stream()
+                    .filter(line -> line.startsWith("VmRSS:"))
+                    .mapToLong(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                    .findFirst()
+                    .orElse(0);
+        } catch (IOException e) {
+            // The process ended meanwhile
+            return 0;
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,375 @@
+package nazeel.utils;
+
+import org.openqa.selenium.WebDriver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Endurance mode: repeats the reservation cycle for hours and tracks how the system degrades over time.
+ * <p>
+ * Enabled with nazeel.soak.hours, see src/test/resources/testng-soak.xml. Every cycle is one invocation of the soak
+ * test, so the Hooks lifecycle (session recycling, time budget, data leases, cleanup) applies to each of them. After
+ * every cycle the step durations, the failure of the cycle, the session memory and the backend response times
+ * (server wait of the XHR/fetch calls, from CDP Network.responseReceived) are appended to soak-series.csv in the
+ * report folder. Memory series are kept per browser session, as a recycled session starts from a fresh heap.
+ * <p>
+ * At the end of the suite {@link #report()} judges every series and writes soak-summary.csv:
+ * - drift: a Mann-Kendall trend test with |Z| of at least nazeel.soak.z (default 2.58, two-sided p &lt; 0.01), whose
+ * Theil-Sen slope over the run amounts to nazeel.soak.minDriftPct (default 10) percent of the first window.
+ * - memory not returning to baseline: the lowest sample of the last window exceeds the lowest of the first window
+ * by more than nazeel.soak.memoryToleranceMb (default 20).
+ * The windows are the first and last nazeel.soak.window cycles (default 10); series shorter than two windows are
+ * reported but not judged.
+ */
+public final class SoakMonitor {
+    private static final String SERIES_HEADER = "epochMillis,elapsedHours,session,cycle,test,metric,value";
+    private static final String SUMMARY_HEADER = "series,samples,firstWindow,lastWindow,slopePerHour,mannKendallZ,"
+            + "driftPct,finding";
+    // Series longer than this are thinned into as many bucket medians, keeping the pairwise statistics affordable
+    private static final int MAX_POINTS = 1000;
+
+    /**
+     * What a series measures, deciding how it is judged.
+     */
+    private enum Kind {
+        LATENCY, MEMORY, ERRORS
+    }
+
+    /**
+     * One series: elapsed hours and values, in cycle order.
+     */
+    private static final class Series {
+        private final Kind kind;
+        private final List<double[]> points = new ArrayList<>();
+
+        private Series(Kind kind) {
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * A backend response seen on the session.
+     *
+     * @param waitMs The time between the request being sent and the response headers arriving.
+     * @param status The HTTP status.
+     */
+    private record Response(double waitMs, int status) {
+    }
+
+    // Top-level steps finished by the cycle running on each thread
+    private static final ThreadLocal<List<Step>> cycleSteps = ThreadLocal.withInitial(ArrayList::new);
+
+    // Backend responses since the last cycle ended
+    private static final Queue<Response> responses = new ConcurrentLinkedQueue<>();
+
+    // Series of this run, by name
+    private static final Map<String, Series> series = new LinkedHashMap<>();
+
+    private static long startNanos;
+    private static int sessions;
+    private static int cycles;
+
+    static {
+        Step.addListener(new Step.Listener() {
+            @Override
+            public void stepFinished(Step step) {
+                if (step.parent() == null && active()) {
+                    cycleSteps.get().add(step);
+                }
+            }
+        });
+    }
+
+    private SoakMonitor() {
+    }
+
+    /**
+     * Checks if the endurance mode is enabled.
+     *
+     * @return true if nazeel.soak.hours is set, false otherwise.
+     */
+    public static boolean active() {
+        return Config.getDouble("nazeel.soak.hours", 0) > 0;
+    }
+
+    /**
+     * Returns the cycles of the soak test, produced lazily until nazeel.soak.hours have passed or the circuit
+     * breaker trips; there are none when the mode is off.
+     *
+     * @return The cycle numbers, for a TestNG data provider.
+     */
+    public static synchronized Iterator<Object[]> cycles() {
+        long duration = (long) (Config.getDouble("nazeel.soak.hours", 0) * 3_600_000_000_000L);
+        startNanos = System.nanoTime();
+        long deadline = startNanos + duration;
+        return new Iterator<>() {
+            private int cycle;
+
+            @Override
+            public boolean hasNext() {
+                return duration > 0 && System.nanoTime() < deadline && CircuitBreaker.cause() == null;
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new Object[]{++cycle};
+            }
+        };
+    }
+
+    /**
+     * Records the backend response times of a freshly opened browser session when the mode is enabled.
+     *
+     * @param driver The session to observe.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized void install(WebDriver driver) {
+        if (!active()) {
+            return;
+        }
+        sessions++;
+        Cdp.send(driver, "Network.enable", Map.of());
+        Cdp.on(driver, "Network.responseReceived", event -> {
+            String type = String.valueOf(event.get("type"));
+            Map<String, Object> response = (Map<String, Object>) event.get("response");
+            if ((type.equals("XHR") || type.equals("Fetch")) && response.get("timing") instanceof Map<?, ?> timing) {
+                Map<String, Object> phases = (Map<String, Object>) timing;
+                double waitMs = Cdp.number(phases, "receiveHeadersEnd") - Cdp.number(phases, "sendEnd");
+                responses.add(new Response(Math.max(0, waitMs), (int) Cdp.number(response, "status")));
+            }
+        });
+    }
+
+    /**
+     * Adds a finished cycle to the time series and appends it to soak-series.csv.
+     *
+     * @param test   The test method name.
+     * @param passed Whether the cycle passed.
+     * @param memory The session memory after the cycle, or null when not sampled.
+     */
+    public static synchronized void cycleFinished(String test, boolean passed, SessionMonitor.Sample memory) {
+        List<Step> steps = new ArrayList<>(cycleSteps.get());
+        cycleSteps.get().clear();
+        if (!active()) {
+            return;
+        }
+        if (startNanos == 0) {
+            startNanos = System.nanoTime();
+        }
+        cycles++;
+        double hours = (System.nanoTime() - startNanos) / 3.6e12;
+        Map<String, Double> values = new LinkedHashMap<>();
+        Map<String, Kind> kinds = new LinkedHashMap<>();
+
+        for (Step step : steps) {
+            put(values, kinds, "step " + step.name() + " ms", Kind.LATENCY, step.durationNanos() / 1e6);
+        }
+        put(values, kinds, "failed cycles", Kind.ERRORS, passed ? 0 : 1);
+        List<Response> cycleResponses = new ArrayList<>();
+        Response response;
+        while ((response = responses.poll()) != null) {
+            cycleResponses.add(response);
+        }
+        if (!cycleResponses.isEmpty()) {
+            double[] waits = cycleResponses.stream().mapToDouble(Response::waitMs).sorted().toArray();
+            put(values, kinds, "backend p50 ms", Kind.LATENCY, percentile(waits, 50));
+            put(values, kinds, "backend p95 ms", Kind.LATENCY, percentile(waits, 95));
+            put(values, kinds, "backend 5xx rate", Kind.ERRORS,
+                    cycleResponses.stream().filter(each -> each.status() >= 500).count() / (double) cycleResponses.size());
+        }
+        if (memory != null) {
+            String session = " (session " + sessions + ")";
+            put(values, kinds, "js heap MB" + session, Kind.MEMORY, memory.jsHeapMb());
+            put(values, kinds, "dom nodes" + session, Kind.MEMORY, memory.domNodes());
+            if (memory.rssMb() > 0) {
+                put(values, kinds, "browser rss MB" + session, Kind.MEMORY, memory.rssMb());
+            }
+        }
+
+        StringBuilder rows = new StringBuilder();
+        long now = System.currentTimeMillis();
+        values.forEach((metric, value) -> {
+            series.computeIfAbsent(TimingHistory.key(test, metric), key -> new Series(kinds.get(metric)))
+                    .points.add(new double[]{hours, value});
+            rows.append(String.join(",", String.valueOf(now), format(hours, "%.4f"), String.valueOf(sessions),
+                            String.valueOf(cycles), test, quote(metric), format(value, "%.2f")))
+                    .append(System.lineSeparator());
+        });
+        Reports.append("soak-series.csv", SERIES_HEADER, rows);
+    }
+
+    /**
+     * Judges every series of the run for drift and writes soak-summary.csv; the flagged series are also printed
+     * as warnings.
+     */
+    public static synchronized void report() {
+        if (series.isEmpty()) {
+            return;
+        }
+        int window = Config.getInt("nazeel.soak.window", 10);
+        double zThreshold = Config.getDouble("nazeel.soak.z", 2.58);
+        double minDriftPct = Config.getDouble("nazeel.soak.minDriftPct", 10);
+        double memoryToleranceMb = Config.getDouble("nazeel.soak.memoryToleranceMb", 20);
+
+        StringBuilder rows = new StringBuilder();
+        List<String> findings = new ArrayList<>();
+        series.forEach((name, each) -> {
+            double[][] points = thin(each.points);
+            int n = points.length;
+            if (n < 2 * window) {
+                rows.append(quote(name)).append(',').append(each.points.size()).append(",,,,,,")
+                        .append(System.lineSeparator());
+                return;
+            }
+            double[] first = column(Arrays.copyOfRange(points, 0, window));
+            double[] last = column(Arrays.copyOfRange(points, n - window, n));
+            double firstLevel = each.kind == Kind.ERRORS ? mean(first) : median(first);
+            double lastLevel = each.kind == Kind.ERRORS ? mean(last) : median(last);
+            double z = mannKendallZ(column(points));
+            double slope = senSlope(points);
+            double span = points[n - 1][0] - points[0][0];
+            double driftPct = firstLevel > 0 ? slope * span / firstLevel * 100 : Double.NaN;
+
+            List<String> finding = new ArrayList<>();
+            boolean rising = z >= zThreshold && lastLevel > firstLevel;
+            if (rising && each.kind == Kind.ERRORS) {
+                finding.add("error rate rising");
+            } else if (rising && (Double.isNaN(driftPct) || driftPct >= minDriftPct)) {
+                finding.add(each.kind == Kind.LATENCY ? "slower over time" : "growing over time");
+            }
+            if (each.kind == Kind.MEMORY && !name.contains("dom nodes")) {
+                double firstFloor = Arrays.stream(first).min().orElse(0);
+                double lastFloor = Arrays.stream(last).min().orElse(0);
+                if (lastFloor - firstFloor > memoryToleranceMb) {
+                    finding.add(String.format(Locale.ROOT, "never returns to baseline (floor %.1f -> %.1f)",
+                            firstFloor, lastFloor));
+                }
+            }
+            rows.append(String.join(",", quote(name), String.valueOf(each.points.size()), format(firstLevel, "%.2f"),
+                            format(lastLevel, "%.2f"), format(slope, "%.3f"), format(z, "%.2f"),
+                            format(driftPct, "%.1f"), quote(String.join("; ", finding))))
+                    .append(System.lineSeparator());
+            if (!finding.isEmpty()) {
+                findings.add(String.format(Locale.ROOT, "'%s' %s (%.2f -> %.2f over %.1f h, Z %.2f)",
+                        name, String.join("; ", finding), firstLevel, lastLevel, span, z));
+            }
+        });
+        Reports.log("Soak summary over " + cycles + " cycles on " + sessions + " sessions (" + SUMMARY_HEADER + ")"
+                + System.lineSeparator() + rows);
+        findings.forEach(finding -> Reports.warn("soak drift: " + finding));
+        Reports.append("soak-summary.csv", SUMMARY_HEADER, rows);
+        series.clear();
+    }
+
+    private static void put(Map<String, Double> values, Map<String, Kind> kinds, String metric, Kind kind, double value) {
+        values.put(metric, value);
+        kinds.put(metric, kind);
+    }
+
+    /**
+     * Mann-Kendall trend statistic, corrected for ties; positive when the values tend to increase.
+     */
+    private static double mannKendallZ(double[] values) {
+        int n = values.length;
+        long s = 0;
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = i + 1; j < n; j++) {
+                s += Double.compare(values[j], values[i]);
+            }
+        }
+        double variance = n * (n - 1.0) * (2 * n + 5);
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j < n && sorted[j] == sorted[i]) {
+                j++;
+            }
+            long ties = j - i;
+            variance -= ties * (ties - 1.0) * (2 * ties + 5);
+            i = j;
+        }
+        variance /= 18;
+        if (s == 0 || variance <= 0) {
+            return 0;
+        }
+        return (s - Math.signum(s)) / Math.sqrt(variance);
+    }
+
+    /**
+     * Theil-Sen slope: the median of the slopes between all pairs of points, in value per hour.
+     */
+    private static double senSlope(double[][] points) {
+        int n = points.length;
+        double[] slopes = new double[n * (n - 1) / 2];
+        int count = 0;
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double dx = points[j][0] - points[i][0];
+                if (dx > 0) {
+                    slopes[count++] = (points[j][1] - points[i][1]) / dx;
+                }
+            }
+        }
+        return median(Arrays.copyOf(slopes, count));
+    }
+
+    /**
+     * Reduces a long series to MAX_POINTS buckets of consecutive points, each its median time and value.
+     */
+    private static double[][] thin(List<double[]> points) {
+        int n = points.size();
+        int buckets = Math.min(n, MAX_POINTS);
+        double[][] thinned = new double[buckets][];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            List<double[]> slice = points.subList((int) ((long) bucket * n / buckets), (int) ((long) (bucket + 1) * n / buckets));
+            thinned[bucket] = new double[]{median(slice.stream().mapToDouble(point -> point[0]).toArray()),
+                    median(slice.stream().mapToDouble(point -> point[1]).toArray())};
+        }
+        return thinned;
+    }
+
+    private static double[] column(double[][] points) {
+        return Arrays.stream(points).mapToDouble(point -> point[1]).toArray();
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return percentile(sorted, 50);
+    }
+
+    private static double mean(double[] values) {
+        return Arrays.stream(values).average().orElse(Double.NaN);
+    }
+
+    private static double percentile(double[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        double rank = percentile / 100 * (sorted.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    private static String format(double value, String pattern) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, pattern, value);
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
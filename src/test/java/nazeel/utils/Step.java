@@ -0,0 +1,120 @@
+package nazeel.utils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A named, timed step of a test, opened with try-with-resources:
+ * <pre>
+ * try (Step step = Step.start("Log in")) {
+ *     ...
+ * }
+ * </pre>
+ * Steps are tracked per thread and can be nested. Registered {@link Listener}s are notified
+ * when a step starts and finishes, which is how timing, tracing and profiling features hook into the flow.
+ */
+public final class Step implements AutoCloseable {
+
+    /**
+     * Receives step start and finish notifications.
+     */
+    public interface Listener {
+        /**
+         * Called on the step's thread right after the step started.
+         *
+         * @param step The started step.
+         */
+        default void stepStarted(Step step) {
+        }
+
+        /**
+         * Called on the step's thread right after the step finished.
+         *
+         * @param step The finished step.
+         */
+        default void stepFinished(Step step) {
+        }
+    }
+
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<Step> current = new ThreadLocal<>();
+
+    private final String name;
+    private final Step parent;
+    private final long startNanos;
+    private long endNanos;
+
+    private Step(String name, Step parent) {
+        this.name = name;
+        this.parent = parent;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Starts a step on the current thread.
+     *
+     * @param name The step name, unique within the test.
+     * @return The started step, to be closed when the step is done.
+     */
+    public static Step start(String name) {
+        Step step = new Step(name, current.get());
+        current.set(step);
+        listeners.forEach(listener -> listener.stepStarted(step));
+        return step;
+    }
+
+    /**
+     * Returns the innermost step running on the current thread.
+     *
+     * @return The current step, or null when no step is running.
+     */
+    public static Step current() {
+        return current.get();
+    }
+
+    /**
+     * Registers a listener for the steps of all threads.
+     *
+     * @param listener The listener to add.
+     */
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the step name.
+     *
+     * @return The step name.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the enclosing step.
+     *
+     * @return The parent step, or null for a top-level step.
+     */
+    public Step parent() {
+        return parent;
+    }
+
+    /**
+     * Returns the step duration, or the time elapsed so far while the step is running.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long durationNanos() {
+        return (endNanos == 0 ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    /**
+     * Finishes the step and restores its parent as the current step.
+     */
+    @Override
+    public void close() {
+        endNanos = System.nanoTime();
+        current.set(parent);
+        listeners.forEach(listener -> listener.stepFinished(this));
+    }
+}
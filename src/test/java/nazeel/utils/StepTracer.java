@@ -0,0 +1,273 @@
+package nazeel.utils;
+
+import nazeel.Hooks;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonInput;
+import org.openqa.selenium.json.JsonType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Records a Chrome performance trace around chosen steps, to tell whether a slow step spends its time on
+ * scripting, style and layout, painting or loading.
+ * <p>
+ * Opt-in with nazeel.trace.steps, a comma-separated list of step name fragments (e.g. "Step 9,Step 10"), or "*" for
+ * every step. The selected steps are bracketed with CDP Tracing.start/Tracing.end; the trace is read back in chunks
+ * through the IO domain straight into traces/&lt;step&gt;-&lt;time&gt;.json in the report folder (loadable in the
+ * DevTools Performance panel), then streamed once more to sum the main-thread time per category into
+ * trace-summary.csv. Only the task slices are kept in memory, never the trace itself.
+ */
+public final class StepTracer {
+    private static final String HEADER = "step,traceFile,busyMs,scriptingMs,renderingMs,paintingMs,loadingMs,gcMs,otherMs";
+
+    private static final List<String> CATEGORIES = List.of("devtools.timeline", "disabled-by-default-devtools.timeline",
+            "disabled-by-default-devtools.timeline.frame", "v8.execute", "blink", "blink.user_timing", "loading",
+            "latencyInfo", "toplevel");
+
+    // Main-thread category of the trace events, by event name; other events nested in a task count as "other"
+    private static final Map<String, String> EVENT_CATEGORIES = categories();
+
+    private static final Set<String> TASKS = Set.of("RunTask", "ThreadControllerImpl::RunTask", "ThreadPool_RunTask");
+
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    // Tracer of every traced session
+    private static final Map<WebDriver, StepTracer> tracers = Collections.synchronizedMap(new WeakHashMap<>());
+
+    static {
+        Step.addListener(new Step.Listener() {
+            @Override
+            public void stepStarted(Step step) {
+                StepTracer tracer = tracers.get(Cdp.unwrap(Hooks.Browser.getDriver()));
+                if (tracer != null) {
+                    tracer.start(step);
+                }
+            }
+
+            @Override
+            public void stepFinished(Step step) {
+                StepTracer tracer = tracers.get(Cdp.unwrap(Hooks.Browser.getDriver()));
+                if (tracer != null) {
+                    tracer.stop(step);
+                }
+            }
+        });
+    }
+
+    private final WebDriver driver;
+    private final List<String> stepFilters;
+    private Step tracedStep;
+    private CompletableFuture<String> stream;
+
+    private StepTracer(WebDriver driver, List<String> stepFilters) {
+        this.driver = driver;
+        this.stepFilters = stepFilters;
+    }
+
+    /**
+     * Prepares a freshly opened browser session for step tracing when enabled by the nazeel.trace.steps setting.
+     *
+     * @param driver The session to trace.
+     */
+    public static void install(WebDriver driver) {
+        List<String> stepFilters = Config.getList("nazeel.trace.steps", "");
+        if (stepFilters.isEmpty()) {
+            return;
+        }
+        StepTracer tracer = new StepTracer(driver, stepFilters);
+        Cdp.on(driver, "Tracing.tracingComplete", event -> {
+            CompletableFuture<String> pending = tracer.stream;
+            if (pending != null) {
+                pending.complete((String) event.get("stream"));
+            }
+        });
+        tracers.put(Cdp.unwrap(driver), tracer);
+    }
+
+    private synchronized void start(Step step) {
+        if (tracedStep != null || stepFilters.stream().noneMatch(filter -> filter.equals("*") || step.name().contains(filter))) {
+            return;
+        }
+        stream = new CompletableFuture<>();
+        Cdp.send(driver, "Tracing.start", Map.of(
+                "transferMode", "ReturnAsStream",
+                "streamFormat", "json",
+                "streamCompression", "none",
+                "traceConfig", Map.of("includedCategories", CATEGORIES)));
+        tracedStep = step;
+    }
+
+    private synchronized void stop(Step step) {
+        if (tracedStep != step) {
+            return;
+        }
+        tracedStep = null;
+        Path file = Config.reportDir().resolve("traces")
+                .resolve(step.name().replaceAll("[^\\w.-]+", "_") + "-" + System.currentTimeMillis() + ".json");
+        try {
+            Cdp.send(driver, "Tracing.end", Map.of());
+            String handle = stream.get(60, TimeUnit.SECONDS);
+            save(handle, file);
+            summarize(step.name(), file);
+        } catch (Exception e) {
+            Reports.warn("could not record the trace of '" + step.name() + "': " + e);
+        } finally {
+            stream = null;
+        }
+    }
+
+    /**
+     * Copies the trace stream to a file chunk by chunk.
+     */
+    private void save(String handle, Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (OutputStream output = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Map<String, Object> chunk;
+            do {
+                chunk = Cdp.send(driver, "IO.read", Map.of("handle", handle, "size", CHUNK_SIZE));
+                String data = (String) chunk.getOrDefault("data", "");
+                output.write(Boolean.TRUE.equals(chunk.get("base64Encoded"))
+                        ? Base64.getDecoder().decode(data) : data.getBytes(StandardCharsets.UTF_8));
+            } while (!Boolean.TRUE.equals(chunk.get("eof")));
+        } finally {
+            Cdp.send(driver, "IO.close", Map.of("handle", handle));
+        }
+    }
+
+    /**
+     * Streams through a trace file and appends the self time per category of the renderer main threads
+     * to trace-summary.csv.
+     */
+    private static void summarize(String step, Path file) throws IOException {
+        // Task slices of every thread, keyed by "pid:tid", and the renderer main threads
+        Map<String, List<Slice>> slices = new HashMap<>();
+        List<String> mainThreads = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(file); JsonInput input = new Json().newInput(reader)) {
+            // The trace is either {"traceEvents": [...], ...} or the bare event array
+            if (input.peek() == JsonType.START_COLLECTION) {
+                readEvents(input, slices, mainThreads);
+            } else {
+                input.beginObject();
+                while (input.hasNext()) {
+                    if (input.nextName().equals("traceEvents")) {
+                        readEvents(input, slices, mainThreads);
+                    } else {
+                        input.skipValue();
+                    }
+                }
+                input.endObject();
+            }
+        }
+
+        Map<String, Long> selfMicros = new LinkedHashMap<>();
+        for (String category : List.of("scripting", "rendering", "painting", "loading", "gc", "other")) {
+            selfMicros.put(category, 0L);
+        }
+        for (String thread : mainThreads) {
+            addSelfTimes(slices.getOrDefault(thread, List.of()), selfMicros);
+        }
+        long busyMicros = selfMicros.values().stream().mapToLong(Long::longValue).sum();
+        String row = String.join(",", "\"" + step.replace("\"", "\"\"") + "\"", file.getFileName().toString(),
+                millis(busyMicros), selfMicros.values().stream().map(StepTracer::millis).collect(Collectors.joining(",")));
+        Reports.log("Trace summary (" + HEADER + ")" + System.lineSeparator() + row);
+        Reports.append("trace-summary.csv", HEADER, row + System.lineSeparator());
+    }
+
+    /**
+     * Reads the trace events one at a time, keeping the task slices and the renderer main threads.
+     */
+    @SuppressWarnings("unchecked")
+    private static void readEvents(JsonInput input, Map<String, List<Slice>> slices, List<String> mainThreads) {
+        input.beginArray();
+        while (input.hasNext()) {
+            Map<String, Object> event = input.read(Json.MAP_TYPE);
+            String thread = event.get("pid") + ":" + event.get("tid");
+            String name = String.valueOf(event.get("name"));
+            if ("M".equals(event.get("ph")) && name.equals("thread_name")
+                    && "CrRendererMain".equals(((Map<String, Object>) event.get("args")).get("name"))) {
+                mainThreads.add(thread);
+            } else if ("X".equals(event.get("ph")) && (TASKS.contains(name) || EVENT_CATEGORIES.containsKey(name))) {
+                long start = (long) Cdp.number(event, "ts");
+                String category = TASKS.contains(name) ? "other" : EVENT_CATEGORIES.get(name);
+                slices.computeIfAbsent(thread, key -> new ArrayList<>())
+                        .add(new Slice(start, start + (long) Cdp.number(event, "dur"), category));
+            }
+        }
+        input.endArray();
+    }
+
+    /**
+     * Attributes to each slice its duration minus the time of the slices nested in it.
+     */
+    private static void addSelfTimes(List<Slice> threadSlices, Map<String, Long> selfMicros) {
+        threadSlices.sort(Comparator.comparingLong(Slice::start).thenComparing(Comparator.comparingLong(Slice::end).reversed()));
+        List<Slice> open = new ArrayList<>();
+        for (Slice slice : threadSlices) {
+            while (!open.isEmpty() && open.get(open.size() - 1).end() <= slice.start()) {
+                open.remove(open.size() - 1);
+            }
+            long duration = slice.end() - slice.start();
+            selfMicros.merge(slice.category(), duration, Long::sum);
+            if (!open.isEmpty()) {
+                // The enclosing slice loses the time of this one
+                selfMicros.merge(open.get(open.size() - 1).category(), -Math.min(duration,
+                        open.get(open.size() - 1).end() - slice.start()), Long::sum);
+            }
+            open.add(slice);
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.1f", micros / 1000.0);
+    }
+
+    private static Map<String, String> categories() {
+        Map<String, String> categories = new HashMap<>();
+        for (String name : List.of("EvaluateScript", "v8.evaluateModule", "FunctionCall", "TimerFire", "EventDispatch",
+                "FireAnimationFrame", "FireIdleCallback", "RunMicrotasks", "v8.compile", "v8.compileModule",
+                "XHRReadyStateChange", "XHRLoad", "V8.Execute")) {
+            categories.put(name, "scripting");
+        }
+        for (String name : List.of("Layout", "UpdateLayoutTree", "RecalculateStyles", "HitTest", "PrePaint",
+                "Layerize", "UpdateLayer", "IntersectionObserverController::computeIntersections")) {
+            categories.put(name, "rendering");
+        }
+        for (String name : List.of("Paint", "PaintImage", "CompositeLayers", "Commit", "DecodeImage")) {
+            categories.put(name, "painting");
+        }
+        for (String name : List.of("ParseHTML", "ParseAuthorStyleSheet", "ResourceReceivedData")) {
+            categories.put(name, "loading");
+        }
+        for (String name : List.of("MajorGC", "MinorGC", "BlinkGC.AtomicPhase", "V8.GCScavenger", "V8.GCFinalizeMC")) {
+            categories.put(name, "gc");
+        }
+        return categories;
+    }
+
+    /**
+     * A main-thread trace event with its category, in trace microseconds.
+     */
+    private record Slice(long start, long end, String category) {
+    }
+}
@@ -0,0 +1,218 @@
+package nazeel.utils;
+
+import nazeel.Hooks;
+import org.openqa.selenium.NotFoundException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.Sleeper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs several independent flows, e.g. reservations, in tabs of one authenticated browser session, interleaving
+ * them: while one tab waits for the backend, the others are driven.
+ * <p>
+ * A flow is a list of stages, each a readiness condition and an action. The engine visits the tabs in turn,
+ * probes the condition of each tab's next stage once, without blocking, and runs the action of the tabs that are
+ * ready; when no tab is ready it sleeps for nazeel.tabs.pollMillis (default 250). A stage not ready within its
+ * timeout fails its flow only. Tabs are tracked by their window handle, never by index:
+ * <pre>
+ * TabWorkflow.Flow flow = new TabWorkflow.Flow("Tab 1")
+ *         .then("Open reservations", driver -> homeActions.isLaterButtonDisplayed(), homeActions::clickLaterButton)
+ *         .then("Hover unit card", driver -> reservationActions.isUnitsCardsDisplayed(), ...);
+ * TabWorkflow.run(List.of(flow, ...), Duration.ofSeconds(10));
+ * </pre>
+ * The first flow runs in the current tab; every other flow gets a new tab opened at the current page, sharing the
+ * session's login. Each action runs as a {@link Step} named "flow - stage"; all flows stop once the test's
+ * {@link TestBudget} is spent. CDP based features (resource filter,
+ * traffic archive, Web Vitals) keep following the tab they were installed on.
+ */
+public final class TabWorkflow {
+
+    /**
+     * One stage of a flow: what must be ready before acting, and the action.
+     */
+    private record Stage(String name, Function<WebDriver, ?> ready, Runnable action) {
+    }
+
+    /**
+     * An independent flow driven in its own tab.
+     */
+    public static final class Flow {
+        private final String name;
+        private final List<Stage> stages = new ArrayList<>();
+        private String handle;
+        private int next;
+        private long waitingSinceNanos;
+        private Throwable failure;
+
+        /**
+         * Creates an empty flow.
+         *
+         * @param name The flow name, prefixing its step names, e.g. "Tab 2".
+         */
+        public Flow(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Appends a stage acting once its condition holds.
+         *
+         * @param stage  The stage name.
+         * @param ready  The readiness condition, returning a non-null, non-false value once met, like a wait condition.
+         * @param action The action, typically calling action class methods.
+         * @return The current Flow instance for method chaining.
+         */
+        public Flow then(String stage, Function<WebDriver, ?> ready, Runnable action) {
+            stages.add(new Stage(stage, ready, action));
+            return this;
+        }
+
+        /**
+         * Appends a stage acting as soon as the previous one is done.
+         *
+         * @param stage  The stage name.
+         * @param action The action, typically calling action class methods.
+         * @return The current Flow instance for method chaining.
+         */
+        public Flow then(String stage, Runnable action) {
+            return then(stage, driver -> true, action);
+        }
+
+        /**
+         * Returns the flow name.
+         *
+         * @return The flow name.
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Returns the window handle of the flow's tab.
+         *
+         * @return The window handle, or null before the flow ran.
+         */
+        public String handle() {
+            return handle;
+        }
+
+        /**
+         * Returns why the flow stopped early.
+         *
+         * @return The failure of a stage, or null when every stage completed.
+         */
+        public Throwable failure() {
+            return failure;
+        }
+
+        private boolean pending() {
+            return failure == null && next < stages.size();
+        }
+    }
+
+    private TabWorkflow() {
+    }
+
+    /**
+     * Runs the flows interleaved in tabs of the current browser session, then closes the tabs it opened.
+     *
+     * @param flows        The flows, the first one running in the current tab.
+     * @param stageTimeout How long a stage may wait for its condition.
+     * @throws AssertionError listing the failed flows, with their failures attached, if any flow failed.
+     */
+    public static void run(List<Flow> flows, Duration stageTimeout) {
+        WebDriver driver = Hooks.Browser.getDriver();
+        String origin = driver.getWindowHandle();
+        String url = driver.getCurrentUrl();
+        Duration implicitWait = driver.manage().timeouts().getImplicitWaitTimeout();
+        Sleeper sleeper = CircuitBreaker.checking(Sleeper.SYSTEM_SLEEPER);
+        Duration pollInterval = Duration.ofMillis(Config.getInt("nazeel.tabs.pollMillis", 250));
+
+        for (Flow flow : flows) {
+            if (flow.handle == null) {
+                flow.handle = flow == flows.getFirst() ? origin : Hooks.Browser.openTab(url);
+            }
+            flow.waitingSinceNanos = System.nanoTime();
+        }
+        String focused = flows.isEmpty() ? origin : flows.getLast().handle;
+        try {
+            // Readiness probes must not block on the implicit wait, actions keep relying on it
+            driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+            boolean pending = true;
+            while (pending) {
+                TestBudget.check();
+                pending = false;
+                boolean progressed = false;
+                for (Flow flow : flows) {
+                    if (!flow.pending()) {
+                        continue;
+                    }
+                    pending = true;
+                    if (!flow.handle.equals(focused)) {
+                        Hooks.Browser.switchTo(flow.handle);
+                        focused = flow.handle;
+                    }
+                    Stage stage = flow.stages.get(flow.next);
+                    if (!isReady(driver, stage)) {
+                        if (System.nanoTime() - flow.waitingSinceNanos > stageTimeout.toNanos()) {
+                            flow.failure = new TimeoutException(flow.name + " - " + stage.name()
+                                    + ": not ready after " + stageTimeout.toSeconds() + " seconds");
+                        }
+                        continue;
+                    }
+                    driver.manage().timeouts().implicitlyWait(implicitWait);
+                    try (Step step = Step.start(flow.name + " - " + stage.name())) {
+                        stage.action().run();
+                    } catch (RuntimeException | AssertionError e) {
+                        CircuitBreaker.check();
+                        flow.failure = e;
+                    } finally {
+                        driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+                    }
+                    flow.next++;
+                    flow.waitingSinceNanos = System.nanoTime();
+                    progressed = true;
+                }
+                if (pending && !progressed) {
+                    sleeper.sleep(pollInterval);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the tab flows", e);
+        } finally {
+            driver.manage().timeouts().implicitlyWait(implicitWait);
+            for (Flow flow : flows) {
+                if (!origin.equals(flow.handle) && driver.getWindowHandles().contains(flow.handle)) {
+                    Hooks.Browser.closeWindow(flow.handle, origin);
+                }
+            }
+            Hooks.Browser.switchTo(origin);
+        }
+
+        List<Flow> failed = flows.stream().filter(flow -> flow.failure != null).toList();
+        if (!failed.isEmpty()) {
+            AssertionError error = new AssertionError(failed.size() + " of " + flows.size() + " tab flows failed: "
+                    + String.join(", ", failed.stream().map(flow -> flow.name + " (" + flow.failure + ")").toList()));
+            failed.forEach(flow -> error.addSuppressed(flow.failure));
+            throw error;
+        }
+    }
+
+    /**
+     * Probes a stage condition once, missing or replaced elements counting as not ready.
+     */
+    private static boolean isReady(WebDriver driver, Stage stage) {
+        try {
+            Object value = stage.ready().apply(driver);
+            return value != null && !Boolean.FALSE.equals(value);
+        } catch (NotFoundException | StaleElementReferenceException e) {
+            return false;
+        }
+    }
+}
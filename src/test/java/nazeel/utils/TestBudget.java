@@ -0,0 +1,211 @@
+package nazeel.utils;
+
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.Sleeper;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Time budget of a whole test, shared by all its explicit waits, so a degraded environment cannot keep a test,
+ * and its worker slot, busy for minutes.
+ * <p>
+ * The budget (nazeel.testBudgetSeconds, default 300, 0 for none) starts with each test method on its thread.
+ * Every wait of Hooks.Browser.explicitWait gets the smaller of its own timeout and the remaining budget; once the
+ * budget is spent, the wait fails with an {@link ExceededException} reporting where the time went: each step of
+ * the test with the part of it spent waiting, and the step that ran out of budget.
+ */
+public final class TestBudget {
+    // Budget of the test running on each thread
+    private static final ThreadLocal<TestBudget> current = new ThreadLocal<>();
+
+    static {
+        Step.addListener(new Step.Listener() {
+            @Override
+            public void stepFinished(Step step) {
+                TestBudget budget = current.get();
+                if (budget != null && step.parent() == null) {
+                    budget.spent(step.name())[0] += step.durationNanos();
+                }
+            }
+        });
+    }
+
+    /**
+     * Failure of a test whose time budget is spent; a Selenium {@link TimeoutException}, like any expired wait.
+     */
+    public static final class ExceededException extends TimeoutException {
+        private ExceededException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Explicit wait limited by the budget of the running test.
+     */
+    public static final class BudgetedWait extends FlightEvents.RecordedWait {
+        private final TestBudget budget;
+        private final boolean clamped;
+
+        /**
+         * Creates a wait lasting at most its own timeout or the remaining budget, whichever is smaller.
+         *
+         * @param driver   The driver to wait on.
+         * @param timeout  The timeout of the wait.
+         * @param interval The polling interval.
+         * @param sleeper  The sleeper between polls.
+         * @throws ExceededException if the budget of the running test is already spent.
+         */
+        public BudgetedWait(WebDriver driver, Duration timeout, Duration interval, Sleeper sleeper) {
+            super(driver, clamp(timeout), interval, sleeper);
+            this.budget = current.get();
+            this.clamped = budget != null && budget.remaining().compareTo(timeout) < 0;
+        }
+
+        @Override
+        public <V> V until(Function<? super WebDriver, V> isTrue) {
+            if (budget == null) {
+                return super.until(isTrue);
+            }
+            budget.waitStartNanos = System.nanoTime();
+            try {
+                return super.until(isTrue);
+            } finally {
+                Step step = topLevelStep();
+                budget.spent(step == null ? null : step.name())[1] += System.nanoTime() - budget.waitStartNanos;
+                budget.waitStartNanos = 0;
+            }
+        }
+
+        @Override
+        protected RuntimeException timeoutException(String message, Throwable lastException) {
+            if (clamped) {
+                return new ExceededException(message + System.lineSeparator() + budget.report(), lastException);
+            }
+            return super.timeoutException(message, lastException);
+        }
+    }
+
+    private final Duration limit;
+    private final long startNanos = System.nanoTime();
+    // Nanoseconds per top-level step: total and waiting; the null key holds the waits outside any step
+    private final Map<String, long[]> spent = new LinkedHashMap<>();
+    // Start of the running wait, 0 when not waiting
+    private long waitStartNanos;
+
+    private TestBudget(Duration limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Starts the budget of the test about to run on the current thread.
+     */
+    public static void start() {
+        int seconds = Config.getInt("nazeel.testBudgetSeconds", 300);
+        if (seconds > 0) {
+            current.set(new TestBudget(Duration.ofSeconds(seconds)));
+        } else {
+            current.remove();
+        }
+    }
+
+    /**
+     * Ends the budget of the test that ran on the current thread.
+     */
+    public static void finish() {
+        current.remove();
+    }
+
+    /**
+     * Fails the running test when its budget is spent.
+     *
+     * @throws ExceededException with the report of the spent budget.
+     */
+    public static void check() {
+        TestBudget budget = current.get();
+        if (budget != null && budget.remaining().isZero()) {
+            throw new ExceededException(budget.report(), null);
+        }
+    }
+
+    /**
+     * Limits a timeout to the remaining budget of the running test.
+     *
+     * @param timeout The timeout.
+     * @return The smaller of the timeout and the remaining budget.
+     * @throws ExceededException if the budget is already spent.
+     */
+    public static Duration clamp(Duration timeout) {
+        check();
+        TestBudget budget = current.get();
+        if (budget == null) {
+            return timeout;
+        }
+        Duration remaining = budget.remaining();
+        return remaining.compareTo(timeout) < 0 ? remaining : timeout;
+    }
+
+    private Duration remaining() {
+        Duration remaining = limit.minusNanos(System.nanoTime() - startNanos);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    private long[] spent(String step) {
+        return spent.computeIfAbsent(step, key -> new long[2]);
+    }
+
+    /**
+     * Describes where the budget went.
+     */
+    private String report() {
+        long now = System.nanoTime();
+        long elapsed = now - startNanos;
+        long waiting = waitStartNanos == 0 ? 0 : now - waitStartNanos;
+        Step running = topLevelStep();
+        StringBuilder report = new StringBuilder("Test budget of " + limit.toSeconds() + " s spent after "
+                + seconds(elapsed) + ":");
+        long inSteps = 0;
+        for (Map.Entry<String, long[]> entry : spent.entrySet()) {
+            if (entry.getKey() == null) {
+                continue;
+            }
+            long total = entry.getValue()[0];
+            long waited = entry.getValue()[1];
+            if (running != null && running.name().equals(entry.getKey())) {
+                total += running.durationNanos();
+                waited += waiting;
+            }
+            inSteps += total;
+            report.append(System.lineSeparator()).append("  ").append(entry.getKey()).append(": ").append(seconds(total))
+                    .append(" (").append(seconds(waited)).append(" waiting)");
+        }
+        if (running != null && !spent.containsKey(running.name())) {
+            inSteps += running.durationNanos();
+            report.append(System.lineSeparator()).append("  ").append(running.name()).append(": ")
+                    .append(seconds(running.durationNanos())).append(" (").append(seconds(waiting)).append(" waiting)");
+        }
+        long outsideWaits = (spent.containsKey(null) ? spent.get(null)[1] : 0) + (running == null ? waiting : 0);
+        report.append(System.lineSeparator()).append("  outside steps: ").append(seconds(elapsed - inSteps))
+                .append(" (").append(seconds(outsideWaits)).append(" waiting)");
+        if (running != null) {
+            report.append(System.lineSeparator()).append("The budget ran out in '").append(running.name()).append("'.");
+        }
+        return report.toString();
+    }
+
+    private static Step topLevelStep() {
+        Step step = Step.current();
+        while (step != null && step.parent() != null) {
+            step = step.parent();
+        }
+        return step;
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.1f s", nanos / 1e9);
+    }
+}
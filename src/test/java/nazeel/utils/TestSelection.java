@@ -0,0 +1,473 @@
+package nazeel.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Decides which tests a change can affect, so CI runs only those on small changes.
+ * <p>
+ * The test suites, action classes and page objects are read as source and split into members (methods, locator
+ * fields, nested types). Each member depends on the members it refers to, through a class name
+ * ({@code Hooks.Browser}), a field of a known type ({@code reservationPage.getUnitsCards()}) or a fluent chain
+ * ({@code .clickSearchGuestButton()}), giving a graph from every {@code @Test} method down to the locators it uses.
+ * The lines changed since a git ref are mapped onto that graph, and a test is selected when any member it depends
+ * on, directly or not, changed. Any change of other code or build files (Hooks, utils, listeners, resources,
+ * pom.xml) selects every test, as the harness is shared by all of them; untracked files only count when they are
+ * Java sources.
+ */
+public final class TestSelection {
+    // Packages forming the dependency graph; changes anywhere else in the sources select everything
+    private static final List<String> GRAPH_PACKAGES = List.of("testsuites", "actions", "pages");
+
+    private static final Pattern HUNK = Pattern.compile("^@@ -\\d+(?:,\\d+)? \\+(\\d+)(?:,(\\d+))? @@");
+    private static final Pattern TYPE_DECLARATION = Pattern.compile("\\b(?:class|interface|record|enum)\\s+(\\w+)");
+    private static final Pattern ANNOTATION = Pattern.compile("@\\w+(?:\\.\\w+)*(?:\\s*\\([^)]*\\))?");
+    private static final Pattern QUALIFIED = Pattern.compile("(\\w+|\\))\\s*\\.\\s*(\\w+)");
+    private static final Pattern IDENTIFIER = Pattern.compile("(?<![\\w.])([A-Za-z_]\\w*)");
+    private static final Pattern TEST_ANNOTATION = Pattern.compile("@(?:org\\.testng\\.annotations\\.)?Test\\b");
+    private static final Pattern SETUP_ANNOTATION = Pattern.compile("@(?:org\\.testng\\.annotations\\.)?(?:Before|After)\\w+");
+
+    private final boolean all;
+    private final Map<String, String> reasons;
+
+    private TestSelection(boolean all, Map<String, String> reasons) {
+        this.all = all;
+        this.reasons = reasons;
+    }
+
+    /**
+     * Selects the tests affected by the changes of the working tree since a git ref.
+     *
+     * @param since     The git ref to compare with, e.g. "origin/main".
+     * @param sourceDir The test sources root, e.g. src/test/java.
+     * @return The selection.
+     * @throws IllegalStateException if git cannot compute the diff.
+     */
+    public static TestSelection since(String since, Path sourceDir) {
+        Map<String, Set<Integer>> changes = changedLines(since);
+        Path graphRoot = sourceDir.resolve("nazeel");
+        Map<Path, Set<Integer>> graphChanges = new HashMap<>();
+        for (Map.Entry<String, Set<Integer>> change : changes.entrySet()) {
+            Path path = Path.of(change.getKey());
+            boolean inGraph = path.toString().endsWith(".java") && GRAPH_PACKAGES.stream()
+                    .anyMatch(pkg -> path.normalize().startsWith(graphRoot.resolve(pkg).normalize()));
+            if (inGraph && Files.exists(path)) {
+                graphChanges.put(path.normalize(), change.getValue());
+            } else if (inGraph || path.startsWith("src") || path.toString().equals("pom.xml")) {
+                return new TestSelection(true, Map.of("*", "harness change: " + change.getKey()));
+            }
+        }
+        return new TestSelection(false, new Graph(graphRoot).affectedTests(graphChanges));
+    }
+
+    /**
+     * Returns why a test is selected.
+     *
+     * @param className  The simple name of the test class.
+     * @param methodName The test method name.
+     * @return The changed member the test depends on, or null when the test is not affected by the changes.
+     */
+    public String reason(String className, String methodName) {
+        return all ? reasons.get("*") : reasons.get(className + "." + methodName);
+    }
+
+    /**
+     * Lists the changed files and, per file, the changed lines of its current version, including untracked sources;
+     * other untracked files, e.g. traffic archives or page snapshots a run generated, are not changes of the harness.
+     */
+    private static Map<String, Set<Integer>> changedLines(String since) {
+        Map<String, Set<Integer>> changes = new LinkedHashMap<>();
+        String file = null;
+        for (String line : git("diff", "--unified=0", "--no-color", "--no-renames", since, "--")) {
+            if (line.startsWith("diff --git ")) {
+                // Deleted files only have a "--- a/..." side
+                file = line.substring(line.indexOf(" b/") + 3);
+                changes.put(file, new TreeSet<>());
+            } else if (file != null) {
+                Matcher hunk = HUNK.matcher(line);
+                if (hunk.find()) {
+                    int start = Integer.parseInt(hunk.group(1));
+                    int count = hunk.group(2) == null ? 1 : Integer.parseInt(hunk.group(2));
+                    if (count == 0) {
+                        // A pure deletion is reported after line "start"; it touches both neighbours
+                        changes.get(file).addAll(List.of(start, start + 1));
+                    }
+                    for (int number = start; number < start + count; number++) {
+                        changes.get(file).add(number);
+                    }
+                }
+            }
+        }
+        for (String untracked : git("ls-files", "--others", "--exclude-standard")) {
+            if (untracked.endsWith(".java")) {
+                changes.put(untracked, Set.of(0));
+            }
+        }
+        return changes;
+    }
+
+    private static List<String> git(String... arguments) {
+        List<String> command = new ArrayList<>(List.of("git"));
+        command.addAll(List.of(arguments));
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            List<String> output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException(String.join(" ", command) + " failed: " + String.join(" ", output));
+            }
+            return output;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not run git", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running git", e);
+        }
+    }
+
+    /**
+     * Member-level dependency graph of the test suites, action classes and page objects.
+     */
+    private static final class Graph {
+        // Members by symbol, "Class#member"; "Class" stands for the class declaration itself
+        private final Map<String, Member> members = new LinkedHashMap<>();
+        // Members of each class by name
+        private final Map<String, Map<String, Member>> classes = new HashMap<>();
+        // Owner class of every nested type
+        private final Map<String, String> nestedTypes = new HashMap<>();
+        // Members referring to each symbol
+        private final Map<String, Set<String>> dependents = new HashMap<>();
+        // Source file of every class
+        private final Map<Path, String> files = new HashMap<>();
+
+        private Graph(Path root) {
+            try (Stream<Path> sources = Files.walk(root)) {
+                for (Path file : sources.filter(path -> path.toString().endsWith(".java")
+                        && GRAPH_PACKAGES.contains(path.getParent().getFileName().toString())).toList()) {
+                    parse(file.normalize());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            members.values().forEach(this::link);
+        }
+
+        /**
+         * Maps the changed lines onto members and returns every test depending on one of them,
+         * with the changed member as reason.
+         */
+        private Map<String, String> affectedTests(Map<Path, Set<Integer>> changes) {
+            Map<String, String> origin = new HashMap<>();
+            Deque<String> queue = new ArrayDeque<>();
+            changes.forEach((file, lines) -> {
+                String className = files.get(file);
+                if (className == null) {
+                    return;
+                }
+                for (Member member : classes.get(className).values()) {
+                    // Line 0 marks a new file; lines outside every member (imports, class header) affect the whole class
+                    boolean changed = lines.contains(0) || lines.stream().anyMatch(line -> line >= member.firstLine && line <= member.lastLine)
+                            || lines.stream().anyMatch(line -> classes.get(className).values().stream()
+                            .noneMatch(other -> line >= other.firstLine && line <= other.lastLine));
+                    if (changed && origin.putIfAbsent(member.symbol(), member.symbol()) == null) {
+                        queue.add(member.symbol());
+                    }
+                }
+            });
+            while (!queue.isEmpty()) {
+                String symbol = queue.poll();
+                for (String dependent : dependents.getOrDefault(symbol, Set.of())) {
+                    if (origin.putIfAbsent(dependent, origin.get(symbol)) == null) {
+                        queue.add(dependent);
+                    }
+                }
+            }
+            Map<String, String> tests = new LinkedHashMap<>();
+            origin.forEach((symbol, changed) -> {
+                Member member = members.get(symbol);
+                if (member != null && member.test) {
+                    tests.put(member.className + "." + member.name, changed);
+                }
+            });
+            return tests;
+        }
+
+        /**
+         * Splits a source file into its top-level members.
+         */
+        private void parse(Path file) throws IOException {
+            String className = file.getFileName().toString().replace(".java", "");
+            String source = Files.readString(file);
+            String code = stripCommentsAndStrings(source);
+            files.put(file, className);
+            Map<String, Member> classMembers = new LinkedHashMap<>();
+            classes.put(className, classMembers);
+            Member declaration = new Member(className, null, 0, 0, "", false, false, null);
+            members.put(className, declaration);
+
+            Matcher type = TYPE_DECLARATION.matcher(code);
+            if (!type.find()) {
+                return;
+            }
+            int body = code.indexOf('{', type.end());
+            int depth = 0;
+            int parens = 0;
+            int start = body + 1;
+            boolean initializer = false;
+            for (int i = body + 1; i < code.length(); i++) {
+                char c = code.charAt(i);
+                if (depth == 0 && parens > 0 && (c == '{' || c == '}')) {
+                    // Array values of annotations and lambdas of field initializers
+                    continue;
+                }
+                if (c == '(') {
+                    parens++;
+                } else if (c == ')') {
+                    parens--;
+                } else if (c == '{') {
+                    if (depth == 0 && parens == 0) {
+                        initializer = isFieldHeader(code.substring(start, i));
+                    }
+                    depth++;
+                } else if (c == '}') {
+                    if (depth == 0) {
+                        break;
+                    }
+                    depth--;
+                    if (depth == 0 && !initializer) {
+                        add(className, source, code, start, i + 1);
+                        start = i + 1;
+                    }
+                } else if (c == ';' && depth == 0 && parens == 0) {
+                    add(className, source, code, start, i + 1);
+                    start = i + 1;
+                    initializer = false;
+                }
+            }
+        }
+
+        private void add(String className, String source, String code, int start, int end) {
+            String text = code.substring(start, end);
+            String annotatedHeader = text.contains("{") ? text.substring(0, text.indexOf('{')) : text;
+            String header = ANNOTATION.matcher(annotatedHeader).replaceAll(" ");
+            if (header.isBlank() && !text.contains("{")) {
+                return;
+            }
+            String name;
+            String fieldType = null;
+            Matcher nested = TYPE_DECLARATION.matcher(header);
+            if (nested.find()) {
+                name = nested.group(1);
+                nestedTypes.put(name, className);
+            } else if (header.isBlank() || header.trim().equals("static")) {
+                name = "<init>";
+            } else if (isFieldHeader(header) || !header.contains("(")) {
+                String declaration = header.split("=", 2)[0].replace(";", "").replaceAll("<[^>]*>", "").trim();
+                String[] tokens = declaration.split("\\s+");
+                name = tokens[tokens.length - 1];
+                fieldType = tokens.length > 1 ? tokens[tokens.length - 2] : null;
+            } else {
+                String[] tokens = header.substring(0, header.indexOf('(')).trim().split("\\s+");
+                name = tokens[tokens.length - 1];
+            }
+            // A constructor initializes the class like the initializer blocks
+            if (name.equals(className)) {
+                name = "<init>";
+            }
+            // The member's comments belong to it, so editing a Javadoc does not count as a class-wide change
+            int firstLine = lineOf(code, start + leadingBlank(source.substring(start, end)));
+            int lastLine = lineOf(code, end - 1);
+            boolean test = TEST_ANNOTATION.matcher(annotatedHeader).find();
+            boolean setup = SETUP_ANNOTATION.matcher(annotatedHeader).find();
+            Member member = classes.get(className).get(name);
+            if (member != null) {
+                // Overloads share one node
+                member = new Member(className, name, Math.min(member.firstLine, firstLine), Math.max(member.lastLine, lastLine),
+                        member.text + text, member.test || test, member.setup || setup, member.fieldType);
+            } else {
+                member = new Member(className, name, firstLine, lastLine, text, test, setup, fieldType);
+            }
+            classes.get(className).put(name, member);
+            members.put(member.symbol(), member);
+        }
+
+        /**
+         * Adds the edges from a member to the members it refers to.
+         */
+        private void link(Member member) {
+            if (member.name == null) {
+                // The class itself depends on its construction
+                Member init = classes.get(member.className).get("<init>");
+                if (init != null) {
+                    edge(member.symbol(), init.symbol());
+                }
+                return;
+            }
+            if (member.test) {
+                // The before/after methods of a test class run around each of its tests
+                classes.get(member.className).values().stream().filter(Member::setup)
+                        .forEach(setup -> edge(member.symbol(), setup.symbol()));
+            }
+            Set<String> referencedClasses = new HashSet<>();
+            Matcher identifiers = IDENTIFIER.matcher(member.text);
+            while (identifiers.find()) {
+                String identifier = identifiers.group(1);
+                String symbol = resolve(member.className, identifier);
+                if (symbol != null) {
+                    edge(member.symbol(), symbol);
+                    referencedClasses.add(members.get(symbol).fieldType != null
+                            ? members.get(symbol).fieldType : symbol.contains("#") ? symbol.substring(0, symbol.indexOf('#')) : symbol);
+                }
+            }
+            Matcher qualified = QUALIFIED.matcher(member.text);
+            while (qualified.find()) {
+                String qualifier = qualified.group(1);
+                String name = qualified.group(2);
+                String target = qualifierClass(member.className, qualifier);
+                if (target != null) {
+                    referencedClasses.add(target);
+                    Member referenced = classes.get(target).get(name);
+                    edge(member.symbol(), referenced != null ? referenced.symbol() : target);
+                } else if (qualifier.equals(")")) {
+                    // A fluent chain: the method of any class this member already uses
+                    for (String used : referencedClasses) {
+                        Member referenced = classes.getOrDefault(used, Map.of()).get(name);
+                        if (referenced != null) {
+                            edge(member.symbol(), referenced.symbol());
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Resolves an unqualified identifier: a member of the same class, a known class, or a nested type.
+         */
+        private String resolve(String className, String identifier) {
+            Member own = classes.get(className).get(identifier);
+            if (own != null) {
+                return own.symbol();
+            }
+            if (classes.containsKey(identifier)) {
+                return identifier;
+            }
+            String owner = nestedTypes.get(identifier);
+            return owner == null ? null : classes.get(owner).get(identifier).symbol();
+        }
+
+        /**
+         * Returns the class whose member a qualified reference designates: a class name, or a field of a known type.
+         */
+        private String qualifierClass(String className, String qualifier) {
+            if (classes.containsKey(qualifier)) {
+                return qualifier;
+            }
+            if (qualifier.equals("this")) {
+                return className;
+            }
+            Member field = classes.get(className).get(qualifier);
+            return field != null && field.fieldType != null && classes.containsKey(field.fieldType) ? field.fieldType : null;
+        }
+
+        private void edge(String from, String to) {
+            if (!from.equals(to)) {
+                dependents.computeIfAbsent(to, key -> new HashSet<>()).add(from);
+            }
+        }
+
+        private static boolean isFieldHeader(String header) {
+            int parens = 0;
+            for (char c : ANNOTATION.matcher(header).replaceAll(" ").toCharArray()) {
+                if (c == '(') {
+                    parens++;
+                } else if (c == ')') {
+                    parens--;
+                } else if (c == '=' && parens == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int leadingBlank(String text) {
+            int i = 0;
+            while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private static int lineOf(String code, int offset) {
+            int line = 1;
+            for (int i = 0; i < offset && i < code.length(); i++) {
+                if (code.charAt(i) == '\n') {
+                    line++;
+                }
+            }
+            return line;
+        }
+
+        /**
+         * Blanks out comments and string, character and text block literals, keeping the line breaks.
+         */
+        private static String stripCommentsAndStrings(String source) {
+            StringBuilder code = new StringBuilder(source);
+            int i = 0;
+            while (i < code.length()) {
+                int end;
+                if (source.startsWith("//", i)) {
+                    end = source.indexOf('\n', i);
+                    end = end < 0 ? source.length() : end;
+                } else if (source.startsWith("/*", i)) {
+                    end = source.indexOf("*/", i + 2);
+                    end = end < 0 ? source.length() : end + 2;
+                } else if (source.startsWith("\"\"\"", i)) {
+                    end = source.indexOf("\"\"\"", i + 3);
+                    end = end < 0 ? source.length() : end + 3;
+                } else if (source.charAt(i) == '"' || source.charAt(i) == '\'') {
+                    char quote = source.charAt(i);
+                    end = i + 1;
+                    while (end < source.length() && source.charAt(end) != quote && source.charAt(end) != '\n') {
+                        end += source.charAt(end) == '\\' ? 2 : 1;
+                    }
+                    end = Math.min(end + 1, source.length());
+                } else {
+                    i++;
+                    continue;
+                }
+                for (int j = i; j < end; j++) {
+                    if (code.charAt(j) != '\n') {
+                        code.setCharAt(j, ' ');
+                    }
+                }
+                i = end;
+            }
+            return code.toString();
+        }
+    }
+
+    /**
+     * A top-level member of a class, with the lines it spans and its source without comments and literals.
+     */
+    private record Member(String className, String name, int firstLine, int lastLine, String text, boolean test,
+                          boolean setup, String fieldType) {
+        private String symbol() {
+            return name == null ? className : className + "#" + name;
+        }
+    }
+}
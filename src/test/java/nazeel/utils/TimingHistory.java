@@ -0,0 +1,195 @@
+package nazeel.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only store of test and step durations across runs.
+ * <p>
+ * Each record is one tab-separated line "epochMillis runId test step durationMs status" in timings.tsv
+ * of the nazeel.history.dir folder (default "perf-history"). Appends take a file lock, so forked
+ * JVMs can share the store; nothing is ever rewritten.
+ */
+public final class TimingHistory {
+
+    /**
+     * One timing record.
+     *
+     * @param epochMillis The time the record was written.
+     * @param runId       The id of the run, shared by all records of one suite run.
+     * @param test        The test method name.
+     * @param step        The step name.
+     * @param durationMs  The step duration in milliseconds.
+     * @param status      The test status, "PASS" or "FAIL".
+     */
+    public record Entry(long epochMillis, String runId, String test, String step, long durationMs, String status) {
+        private String toLine() {
+            return String.join("\t", String.valueOf(epochMillis), runId, clean(test), clean(step),
+                    String.valueOf(durationMs), status) + "\n";
+        }
+
+        /**
+         * Parses a record line, or returns null for a malformed one, e.g. left partial by a JVM killed mid-append.
+         */
+        private static Entry parse(String line) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 6 || !(fields[5].equals("PASS") || fields[5].equals("FAIL"))) {
+                return null;
+            }
+            try {
+                return new Entry(Long.parseLong(fields[0]), fields[1], fields[2], fields[3], Long.parseLong(fields[4]), fields[5]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static String clean(String value) {
+            return value.replaceAll("[\\t\\n\\r]", " ");
+        }
+    }
+
+    private final Path file;
+
+    /**
+     * Opens the store in the configured history folder.
+     */
+    public TimingHistory() {
+        this(Path.of(Config.get("nazeel.history.dir", "perf-history")).resolve("timings.tsv"));
+    }
+
+    /**
+     * Opens the store backed by the given file.
+     *
+     * @param file The history file.
+     */
+    public TimingHistory(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Appends records to the store under an exclusive file lock.
+     *
+     * @param entries The records to append.
+     */
+    public void append(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        entries.forEach(entry -> lines.append(entry.toLine()));
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+                 FileLock ignored = channel.lock()) {
+                channel.write(ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the latest passing durations of every test step, streaming through the store.
+     * Malformed lines are skipped with a warning.
+     *
+     * @param window The maximum number of durations kept per test step.
+     * @return The durations in milliseconds, oldest first, by "test/step" key.
+     */
+    public Map<String, long[]> baseline(int window) {
+        Map<String, Deque<Long>> samples = new HashMap<>();
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    Entry entry = Entry.parse(line);
+                    if (entry == null) {
+                        Reports.warn("skipping malformed line " + lineNumber + " of " + file);
+                        continue;
+                    }
+                    if (!entry.status().equals("PASS")) {
+                        continue;
+                    }
+                    Deque<Long> durations = samples.computeIfAbsent(key(entry.test(), entry.step()), key -> new ArrayDeque<>());
+                    durations.addLast(entry.durationMs());
+                    if (durations.size() > window) {
+                        durations.removeFirst();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        Map<String, long[]> baseline = new HashMap<>();
+        samples.forEach((key, durations) -> baseline.put(key, durations.stream().mapToLong(Long::longValue).toArray()));
+        return baseline;
+    }
+
+    /**
+     * Builds the baseline key of a test step.
+     *
+     * @param test The test method name.
+     * @param step The step name.
+     * @return The "test/step" key.
+     */
+    public static String key(String test, String step) {
+        return Entry.clean(test) + "/" + Entry.clean(step);
+    }
+
+    /**
+     * Computes the regression threshold of a set of durations: p95 + k * MAD
+     * (median absolute deviation from the median).
+     *
+     * @param durations The baseline durations.
+     * @param k         The MAD multiplier.
+     * @return The threshold in milliseconds.
+     */
+    public static double threshold(long[] durations, double k) {
+        long[] sorted = durations.clone();
+        Arrays.sort(sorted);
+        double median = percentile(sorted, 50);
+        double[] deviations = Arrays.stream(sorted).mapToDouble(duration -> Math.abs(duration - median)).sorted().toArray();
+        double mad = percentile(deviations, 50);
+        return percentile(sorted, 95) + k * mad;
+    }
+
+    /**
+     * Returns a percentile of sorted values using linear interpolation.
+     *
+     * @param sorted     The values, sorted ascending.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The percentile value.
+     */
+    public static double percentile(long[] sorted, double percentile) {
+        return percentile(Arrays.stream(sorted).asDoubleStream().toArray(), percentile);
+    }
+
+    private static double percentile(double[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        double rank = percentile / 100 * (sorted.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+    }
+}
@@ -0,0 +1,271 @@
+package nazeel.utils;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.json.Json;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records the responses of a real run and replays them in later runs, so the tests run without the staging
+ * backend and without network latency.
+ * <p>
+ * Settings (system properties or suite parameters):
+ * - nazeel.traffic: "off" (default), "record" or "replay".
+ * - nazeel.traffic.archive: the archive file, gzip compressed JSON lines (default traffic/ts01.jsonl.gz in the report
+ * folder). Archives hold staging responses, guest data included; commit one, e.g. under src/test/resources/traffic,
+ * only by pointing this setting there on purpose, after scrubbing it.
+ * - nazeel.traffic.urls: comma-separated URL patterns to record and replay, "*" matching any characters (default "*").
+ * - nazeel.traffic.ignoreParams: comma-separated query parameters left out of the match, e.g. cache busters.
+ * - nazeel.traffic.unmatched: "fail" (default) fails requests missing from the archive, "passthrough" sends them on.
+ * <p>
+ * Requests are matched by method, path with query and a hash of the request body. Responses recorded several
+ * times for the same request are replayed in recording order, the last one being repeated once exhausted.
+ * {@link #report()} writes the requests missing from the archive to traffic-unmatched.csv.
+ */
+public class TrafficArchive {
+    // Archive modes
+    public static final String OFF = "off";
+    public static final String RECORD = "record";
+    public static final String REPLAY = "replay";
+
+    // Headers describing the transfer encoding, which no longer applies to the decoded bodies in the archive
+    private static final Set<String> TRANSFER_HEADERS = Set.of("content-encoding", "content-length", "transfer-encoding");
+
+    private static final Json JSON = new Json();
+
+    // Archives recorded by this JVM; recycled browser sessions append to them instead of starting over
+    private static final Set<Path> recorded = ConcurrentHashMap.newKeySet();
+
+    private final WebDriver driver;
+    private final String mode;
+    private final Path archive;
+    private final Set<String> ignoredParams;
+
+    // Recorded responses by request key, in recording order
+    private final Map<String, Deque<Map<String, Object>>> responses = new LinkedHashMap<>();
+
+    // Requests missing from the archive, as "method url"
+    private final Queue<String> unmatched = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder exchanges = new LongAdder();
+    private Writer writer;
+
+    private TrafficArchive(WebDriver driver, String mode) {
+        this.driver = driver;
+        this.mode = mode;
+        this.archive = Path.of(Config.get("nazeel.traffic.archive",
+                Config.reportDir().resolve("traffic").resolve("ts01.jsonl.gz").toString()));
+        this.ignoredParams = Set.copyOf(Config.getList("nazeel.traffic.ignoreParams", ""));
+    }
+
+    /**
+     * Installs recording or replay on a freshly opened browser when enabled by the nazeel.traffic setting.
+     *
+     * @param driver The driver whose traffic is recorded or replayed.
+     * @return The installed archive, or null when off.
+     */
+    public static TrafficArchive install(WebDriver driver) {
+        String mode = Config.get("nazeel.traffic", OFF).toLowerCase();
+        if (mode.equals(OFF)) {
+            return null;
+        }
+        TrafficArchive traffic = new TrafficArchive(driver, mode);
+        List<Map<String, Object>> patterns = Config.getList("nazeel.traffic.urls", "*").stream()
+                .map(url -> Map.<String, Object>of("urlPattern", url,
+                        "requestStage", mode.equals(RECORD) ? "Response" : "Request"))
+                .toList();
+        switch (mode) {
+            case RECORD -> {
+                traffic.openWriter();
+                Cdp.intercept(driver, patterns, traffic::record);
+            }
+            case REPLAY -> {
+                traffic.load();
+                Cdp.intercept(driver, patterns, traffic::replay);
+            }
+            default -> throw new IllegalArgumentException("Invalid nazeel.traffic mode: " + mode);
+        }
+        return traffic;
+    }
+
+    /**
+     * Appends a paused response, with its decoded body, to the archive and lets it through.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean record(Map<String, Object> pausedRequest) {
+        if (!pausedRequest.containsKey("responseStatusCode")) {
+            return false;
+        }
+        Map<String, Object> request = (Map<String, Object>) pausedRequest.get("request");
+        String body = "";
+        try {
+            Map<String, Object> result = Cdp.send(driver, "Fetch.getResponseBody",
+                    Map.of("requestId", pausedRequest.get("requestId")));
+            body = Boolean.TRUE.equals(result.get("base64Encoded")) ? (String) result.get("body")
+                    : Base64.getEncoder().encodeToString(((String) result.get("body")).getBytes(StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            // Redirects and empty responses have no body
+        }
+        List<Map<String, Object>> headers = ((List<Map<String, Object>>) pausedRequest.getOrDefault("responseHeaders", List.of()))
+                .stream()
+                .filter(header -> !TRANSFER_HEADERS.contains(String.valueOf(header.get("name")).toLowerCase()))
+                .toList();
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("key", key(request));
+        entry.put("url", request.get("url"));
+        entry.put("status", pausedRequest.get("responseStatusCode"));
+        entry.put("headers", headers);
+        entry.put("body", body);
+        synchronized (this) {
+            try {
+                writer.write(JSON.toJson(entry).replace("\n", "") + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        exchanges.increment();
+        Cdp.send(driver, "Fetch.continueRequest", Map.of("requestId", pausedRequest.get("requestId")));
+        return true;
+    }
+
+    /**
+     * Fulfills a paused request from the archive, or reports it when the archive has no response for it.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean replay(Map<String, Object> pausedRequest) {
+        Map<String, Object> request = (Map<String, Object>) pausedRequest.get("request");
+        Map<String, Object> response;
+        synchronized (this) {
+            Deque<Map<String, Object>> queued = responses.get(key(request));
+            response = queued == null ? null : queued.size() > 1 ? queued.poll() : queued.peek();
+        }
+        if (response == null) {
+            unmatched.add(request.get("method") + " " + request.get("url"));
+            if (Config.get("nazeel.traffic.unmatched", "fail").equalsIgnoreCase("passthrough")) {
+                return false;
+            }
+            Cdp.send(driver, "Fetch.failRequest",
+                    Map.of("requestId", pausedRequest.get("requestId"), "errorReason", "ConnectionRefused"));
+            return true;
+        }
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("requestId", pausedRequest.get("requestId"));
+        params.put("responseCode", response.get("status"));
+        params.put("responseHeaders", response.get("headers"));
+        params.put("body", response.get("body"));
+        Cdp.send(driver, "Fetch.fulfillRequest", params);
+        exchanges.increment();
+        return true;
+    }
+
+    /**
+     * Builds the match key of a request: method, path with query without the ignored parameters, and body hash.
+     */
+    private String key(Map<String, Object> request) {
+        URI uri = URI.create(String.valueOf(request.get("url")).replaceAll("#.*$", ""));
+        String query = uri.getRawQuery() == null ? "" : Arrays.stream(uri.getRawQuery().split("&"))
+                .filter(param -> !ignoredParams.contains(param.split("=", 2)[0]))
+                .collect(Collectors.joining("&"));
+        String body = (String) request.getOrDefault("postData", "");
+        return request.get("method") + " " + uri.getRawPath() + (query.isEmpty() ? "" : "?" + query) + " " + sha256(body);
+    }
+
+    private static String sha256(String text) {
+        if (text.isEmpty()) {
+            return "-";
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void openWriter() {
+        try {
+            Files.createDirectories(archive.toAbsolutePath().getParent());
+            // Appended gzip members are read back as one stream
+            StandardOpenOption openOption = recorded.add(archive.toAbsolutePath())
+                    ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND;
+            writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(archive,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, openOption)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void load() {
+        if (Files.notExists(archive)) {
+            throw new IllegalStateException("No traffic archive to replay at " + archive.toAbsolutePath()
+                    + "; record one with -Dnazeel.traffic=record");
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(archive)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    Map<String, Object> entry = JSON.toType(line, Json.MAP_TYPE);
+                    responses.computeIfAbsent((String) entry.get("key"), key -> new ArrayDeque<>()).add(entry);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Completes the archive when recording, prints the traffic summary and appends the requests missing
+     * from the archive to traffic-unmatched.csv in the report folder.
+     */
+    public void report() {
+        if (writer != null) {
+            synchronized (this) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        Reports.log("Traffic " + mode + ": " + exchanges.sum() + " responses, " + unmatched.size()
+                + " unmatched requests (" + archive + ")");
+        if (unmatched.isEmpty()) {
+            return;
+        }
+        String rows = unmatched.stream()
+                .map(request -> "\"" + request.replace("\"", "\"\"") + "\"")
+                .collect(Collectors.joining(System.lineSeparator()));
+        Reports.log("Requests missing from the traffic archive" + System.lineSeparator() + rows);
+        Reports.append("traffic-unmatched.csv", "request", rows + System.lineSeparator());
+    }
+}
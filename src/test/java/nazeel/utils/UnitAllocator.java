@@ -0,0 +1,255 @@
+package nazeel.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Hands each concurrently running test a unit no other test is reserving.
+ * <p>
+ * Inside a JVM a unit is claimed lock-free through a concurrent map. Across forked JVMs the claim is then
+ * registered in a shared lease file (unit-leases.tsv in the nazeel.units.lockDir folder) guarded by a file lock.
+ * Every registered lease carries its owner process and an expiry (nazeel.units.leaseTimeoutSeconds, default 900),
+ * so leases of crashed or hung workers are recovered once their process is gone or the lease has expired.
+ * A daemon thread renews the leases of this JVM every third of the timeout while they are held, so a lease kept
+ * past its test, e.g. until the background cleanup closes the reservation left on the unit, never expires early.
+ */
+public final class UnitAllocator {
+
+    /**
+     * Exclusive lease of one unit; closing it frees the unit for other tests.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final String unitNumber;
+        private boolean released;
+        // Leases of the test holding this one, or null once handed over with detach
+        private volatile List<Lease> owner;
+
+        private Lease(String unitNumber) {
+            this.unitNumber = unitNumber;
+        }
+
+        /**
+         * Returns the leased unit number.
+         *
+         * @return The unit number.
+         */
+        public String unitNumber() {
+            return unitNumber;
+        }
+
+        /**
+         * Frees the unit for other tests.
+         */
+        @Override
+        public synchronized void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            try {
+                // Once expired the entry may belong to another process; only this process' own entry is removed
+                updateRegistry(entries -> entries.computeIfPresent(unitNumber,
+                        (unit, entry) -> entry.pid() == PID ? null : entry));
+            } finally {
+                claimed.remove(unitNumber, this);
+                List<Lease> holder = owner;
+                if (holder != null) {
+                    holder.remove(this);
+                }
+            }
+        }
+    }
+
+    // Units leased by this JVM
+    private static final Map<String, Lease> claimed = new ConcurrentHashMap<>();
+
+    // Leases held by the test running on each thread
+    private static final ThreadLocal<List<Lease>> leases =
+            ThreadLocal.withInitial(() -> Collections.synchronizedList(new ArrayList<>()));
+
+    // File locks are held per JVM, so the threads of this JVM take turns on the shared registry
+    private static final ReentrantLock registryLock = new ReentrantLock();
+
+    private static final long PID = ProcessHandle.current().pid();
+
+    // Renews the registered leases of this JVM, started with the first lease
+    private static final AtomicBoolean renewalStarted = new AtomicBoolean();
+
+    private UnitAllocator() {
+    }
+
+    /**
+     * Leases the first candidate unit no other test holds.
+     *
+     * @param unitNumbers The candidate unit numbers, most preferred first.
+     * @return The lease, or null if every candidate is leased by another test.
+     */
+    public static Lease acquire(List<String> unitNumbers) {
+        for (String unitNumber : unitNumbers) {
+            Lease lease = new Lease(unitNumber);
+            if (claimed.putIfAbsent(unitNumber, lease) != null) {
+                continue;
+            }
+            boolean[] registered = {false};
+            try {
+                updateRegistry(entries -> {
+                    if (!entries.containsKey(unitNumber)) {
+                        entries.put(unitNumber, new RegistryEntry(PID, expiry()));
+                        registered[0] = true;
+                    }
+                });
+            } finally {
+                if (!registered[0]) {
+                    claimed.remove(unitNumber, lease);
+                }
+            }
+            if (registered[0]) {
+                lease.owner = leases.get();
+                lease.owner.add(lease);
+                startRenewal();
+                return lease;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes a lease of the current thread out of its teardown, so it outlives the test, e.g. until a reservation
+     * left on the unit is cleaned up; the new holder must close it.
+     *
+     * @param unitNumber The leased unit number.
+     * @return The lease, or null if the current thread holds no lease of the unit.
+     */
+    public static Lease detach(String unitNumber) {
+        List<Lease> threadLeases = leases.get();
+        synchronized (threadLeases) {
+            for (Lease lease : threadLeases) {
+                if (lease.unitNumber.equals(unitNumber)) {
+                    threadLeases.remove(lease);
+                    lease.owner = null;
+                    return lease;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Frees every unit leased by the current thread.
+     */
+    public static void releaseAll() {
+        for (Lease lease : List.copyOf(leases.get())) {
+            lease.close();
+        }
+    }
+
+    /**
+     * Starts renewing the leases of this JVM every third of the lease timeout, once per JVM.
+     */
+    private static void startRenewal() {
+        if (!renewalStarted.compareAndSet(false, true)) {
+            return;
+        }
+        long periodSeconds = Math.max(1, Config.getInt("nazeel.units.leaseTimeoutSeconds", 900) / 3);
+        Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("unit-lease-renewal").daemon().factory())
+                .scheduleAtFixedRate(UnitAllocator::renew, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Moves the expiry of every registered lease of this JVM that is still held.
+     */
+    private static void renew() {
+        if (claimed.isEmpty()) {
+            return;
+        }
+        try {
+            updateRegistry(entries -> claimed.keySet().forEach(unitNumber -> entries.computeIfPresent(unitNumber,
+                    (unit, entry) -> entry.pid() == PID ? new RegistryEntry(PID, expiry()) : entry)));
+        } catch (RuntimeException e) {
+            // A failed run must not cancel the schedule; the next one retries
+            Reports.warn("could not renew the unit leases: " + e);
+        }
+    }
+
+    /**
+     * Returns the expiry of a lease registered or renewed now.
+     */
+    private static long expiry() {
+        return System.currentTimeMillis()
+                + Duration.ofSeconds(Config.getInt("nazeel.units.leaseTimeoutSeconds", 900)).toMillis();
+    }
+
+    /**
+     * Owner process and expiry of a registered lease.
+     */
+    private record RegistryEntry(long pid, long expiryMillis) {
+        private boolean isStale() {
+            return expiryMillis < System.currentTimeMillis()
+                    || ProcessHandle.of(pid).map(process -> !process.isAlive()).orElse(true);
+        }
+    }
+
+    /**
+     * Reads the shared registry under the file lock, drops stale leases, applies the update and writes it back.
+     */
+    private static void updateRegistry(Consumer<Map<String, RegistryEntry>> update) {
+        registryLock.lock();
+        try {
+            Path lockDir = Path.of(Config.get("nazeel.units.lockDir",
+                    Path.of(System.getProperty("java.io.tmpdir"), "nazeel-unit-locks").toString()));
+            Files.createDirectories(lockDir);
+            try (FileChannel channel = FileChannel.open(lockDir.resolve("unit-leases.tsv"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                Map<String, RegistryEntry> entries = read(channel);
+                entries.values().removeIf(RegistryEntry::isStale);
+                update.accept(entries);
+                write(channel, entries);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            registryLock.unlock();
+        }
+    }
+
+    private static Map<String, RegistryEntry> read(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        channel.read(buffer, 0);
+        Map<String, RegistryEntry> entries = new LinkedHashMap<>();
+        for (String line : new String(buffer.array(), StandardCharsets.UTF_8).split("\n")) {
+            String[] fields = line.split("\t");
+            if (fields.length == 3) {
+                entries.put(fields[0], new RegistryEntry(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+            }
+        }
+        return entries;
+    }
+
+    private static void write(FileChannel channel, Map<String, RegistryEntry> entries) throws IOException {
+        StringBuilder content = new StringBuilder();
+        entries.forEach((unitNumber, entry) ->
+                content.append(unitNumber).append('\t').append(entry.pid()).append('\t').append(entry.expiryMillis()).append('\n'));
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8)), 0);
+    }
+}
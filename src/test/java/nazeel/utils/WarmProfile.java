@@ -0,0 +1,274 @@
+package nazeel.utils;
+
+import nazeel.pages.P01_Login;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Starts browser sessions from a template profile already holding the application's HTTP cache and service worker
+ * cache, so the first page renders from disk instead of downloading the Angular bundles, fonts and Kendo/PrimeNG
+ * assets again.
+ * <p>
+ * Enabled with nazeel.warmProfile=true. The template is seeded once per application version, the version being
+ * the hashed bundle names referenced by the login page, so a deployment produces a fresh template and the stale
+ * ones are deleted. Every session gets its own copy-on-write clone of the template (cp --reflink where the file
+ * system supports it, a plain copy otherwise), deleted when the JVM exits. Clones hold a shared lock on the
+ * template's lock file while copying, and a stale template is only deleted when no fork holds that lock. Settings:
+ * - nazeel.warmProfile.dir: folder of the templates and clones (default &lt;tmp&gt;/nazeel-profiles).
+ * - nazeel.warmProfile.seedSeconds: how long seeding waits for the service worker to activate (default 20).
+ */
+public final class WarmProfile {
+    // Chrome lock files of the seeding session, which must not be carried over into clones
+    private static final List<String> LOCK_FILES = List.of("SingletonLock", "SingletonSocket", "SingletonCookie", "lockfile");
+
+    // Hashed bundle file names referenced by the application's index page
+    private static final Pattern BUNDLE = Pattern.compile("(?:src|href)=\"([^\"]*\\.[0-9a-f]{8,}\\.(?:js|css))\"");
+
+    private static final String SEED_SCRIPT = """
+            var done = arguments[arguments.length - 1];
+            var deadline = Date.now() + arguments[0];
+            function check() {
+                if (document.readyState !== 'complete') return setTimeout(check, 250);
+                if (!('serviceWorker' in navigator)) return done(false);
+                navigator.serviceWorker.getRegistrations().then(function (registrations) {
+                    var active = registrations.some(function (r) { return r.active && !r.installing && !r.waiting; });
+                    if (active || Date.now() > deadline) done(active);
+                    else setTimeout(check, 500);
+                });
+            }
+            check();
+            """;
+
+    // Clones created by this JVM
+    private static final Queue<Path> clones = new ConcurrentLinkedQueue<>();
+
+    private static volatile Path template;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> clones.forEach(WarmProfile::delete)));
+    }
+
+    private WarmProfile() {
+    }
+
+    /**
+     * Returns the Chrome options of a new session, starting it from a clone of the warm template when enabled.
+     *
+     * @return The Chrome options.
+     */
+    public static ChromeOptions options() {
+        ChromeOptions options = new ChromeOptions();
+        if (Config.getBoolean("nazeel.warmProfile", false)) {
+            Path clone = cloneTemplate();
+            options.addArguments("--user-data-dir=" + clone.toAbsolutePath());
+        }
+        return options;
+    }
+
+    /**
+     * Clones the template of the current application version into a new session profile.
+     */
+    private static Path cloneTemplate() {
+        while (true) {
+            Path source = template();
+            Path clone = source.resolveSibling("sessions").resolve(UUID.randomUUID().toString());
+            // The shared lock keeps other forks from deleting the template while it is copied
+            try (FileChannel channel = FileChannel.open(lockFile(source), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock(0, Long.MAX_VALUE, true)) {
+                if (Files.exists(source)) {
+                    copy(source, clone);
+                    clones.add(clone);
+                    return clone;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // A fork seeded a newer version and deleted this template before the lock was taken
+            forgetTemplate(source);
+        }
+    }
+
+    /**
+     * Copies a template copy-on-write where possible.
+     */
+    private static void copy(Path source, Path clone) throws IOException {
+        Files.createDirectories(clone.getParent());
+        try {
+            Process copy = new ProcessBuilder("cp", "-R", "--reflink=auto", source.toString(), clone.toString())
+                    .redirectErrorStream(true).start();
+            if (copy.waitFor() != 0) {
+                delete(clone);
+                copyTree(source, clone);
+            }
+        } catch (IOException e) {
+            // No cp command, e.g. on Windows
+            copyTree(source, clone);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while cloning the warm profile", e);
+        }
+    }
+
+    private static synchronized void forgetTemplate(Path stale) {
+        if (stale.equals(template)) {
+            template = null;
+        }
+    }
+
+    /**
+     * Returns the template of the current application version, seeding it first when missing.
+     */
+    private static synchronized Path template() {
+        if (template != null) {
+            return template;
+        }
+        Path dir = Path.of(Config.get("nazeel.warmProfile.dir",
+                Path.of(System.getProperty("java.io.tmpdir"), "nazeel-profiles").toString()));
+        try {
+            Files.createDirectories(dir);
+            // Forked JVMs seed a missing template only once
+            try (FileChannel channel = FileChannel.open(dir.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                Path current = dir.resolve("template-" + appVersion());
+                if (Files.notExists(current)) {
+                    seed(current);
+                    try (Stream<Path> templates = Files.list(dir)) {
+                        templates.filter(path -> Files.isDirectory(path) && !path.equals(current)
+                                        && path.getFileName().toString().startsWith("template-"))
+                                .forEach(WarmProfile::deleteUnused);
+                    }
+                }
+                template = current;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return template;
+    }
+
+    /**
+     * Loads the login page in a fresh profile until its assets are cached and its service worker is active,
+     * then publishes the profile as the template.
+     */
+    private static void seed(Path target) throws IOException {
+        Path seeding = target.resolveSibling(target.getFileName() + ".seeding");
+        delete(seeding);
+        ChromeOptions options = new ChromeOptions();
+        options.addArguments("--user-data-dir=" + seeding.toAbsolutePath());
+        WebDriver driver = new ChromeDriver(options);
+        try {
+            int seedSeconds = Config.getInt("nazeel.warmProfile.seedSeconds", 20);
+            driver.manage().timeouts().scriptTimeout(Duration.ofSeconds(seedSeconds + 30L));
+            driver.get(P01_Login.URL);
+            ((JavascriptExecutor) driver).executeAsyncScript(SEED_SCRIPT, seedSeconds * 1000);
+        } finally {
+            // Quitting flushes the HTTP cache to disk
+            driver.quit();
+        }
+        for (String lockFile : LOCK_FILES) {
+            Files.deleteIfExists(seeding.resolve(lockFile));
+        }
+        Files.move(seeding, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Identifies the deployed application version by the hashed bundle names of its index page.
+     */
+    private static String appVersion() {
+        try {
+            HttpResponse<String> response = HttpClient.newBuilder()
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build()
+                    .send(HttpRequest.newBuilder(URI.create(P01_Login.URL)).timeout(Duration.ofSeconds(20)).build(),
+                            HttpResponse.BodyHandlers.ofString());
+            StringBuilder bundles = new StringBuilder();
+            Matcher matcher = BUNDLE.matcher(response.body());
+            while (matcher.find()) {
+                bundles.append(matcher.group(1)).append('\n');
+            }
+            String fingerprint = bundles.isEmpty() ? response.body() : bundles.toString();
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(fingerprint.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the application version from " + P01_Login.URL, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the application version", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes a stale template unless a fork is cloning it; it is then left for a later run to delete.
+     */
+    private static void deleteUnused(Path stale) {
+        Path lockFile = lockFile(stale);
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            if (lock != null) {
+                delete(stale);
+            }
+        } catch (OverlappingFileLockException e) {
+            // Cloned by another thread of this JVM
+        } catch (IOException e) {
+            Reports.warn("could not delete " + stale + ": " + e);
+        }
+    }
+
+    private static Path lockFile(Path template) {
+        return template.resolveSibling(template.getFileName() + ".lock");
+    }
+
+    private static void copyTree(Path source, Path target) {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.copy(path, target.resolve(source.relativize(path).toString()), StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path path) {
+        if (Files.notExists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            Reports.warn("could not delete " + path + ": " + e);
+        }
+    }
+}